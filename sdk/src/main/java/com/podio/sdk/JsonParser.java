@@ -21,85 +21,492 @@
  */
 package com.podio.sdk;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.google.gson.FieldNamingPolicy;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
+import com.google.gson.JsonNull;
 import com.google.gson.JsonParseException;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import com.podio.sdk.domain.field.Field;
+import com.podio.sdk.domain.field.LazyFieldList;
 
 public class JsonParser {
 
-    // TODO: Investigate the possibilities offered by Gson TypeAdapter instead.
-    // According to Google documentation it's the preferred way of
-    // (de)serializing JSON as it's more efficient and has a smaller memory
-    // footprint.
-    private static final class FieldDeserializer implements JsonDeserializer<Field> {
+    /**
+     * Binds a JSON member name to a Java field on a {@link Field} subclass,
+     * together with the Gson adapter that reads the member value straight from
+     * the stream.
+     */
+    private static final class FieldBinding {
+        private final java.lang.reflect.Field field;
+        private final TypeAdapter<?> adapter;
+
+        private FieldBinding(java.lang.reflect.Field field, TypeAdapter<?> adapter) {
+            this.field = field;
+            this.adapter = adapter;
+        }
+
+        private void read(JsonReader in, Field target) throws IOException, IllegalAccessException {
+            field.set(target, adapter.read(in));
+        }
+
+        private void read(JsonElement element, Field target) throws IllegalAccessException {
+            field.set(target, adapter.fromJsonTree(element));
+        }
+    }
+
+    /**
+     * A streaming replacement for the previous tree based field deserializer.
+     * The polymorphic {@link Field} type is resolved from the "type" member in
+     * one pass over the JSON stream. Only the members (if any) that precede the
+     * "type" member are buffered as JSON trees, everything after it is read
+     * directly into the resolved field subclass.
+     */
+    private static final class FieldTypeAdapterFactory implements TypeAdapterFactory {
+        private final Map<Class<?>, Map<String, FieldBinding>> bindings =
+                new ConcurrentHashMap<Class<?>, Map<String, FieldBinding>>();
+
+        private final java.lang.reflect.Field typeMember;
+
+        private FieldTypeAdapterFactory() {
+            try {
+                typeMember = Field.class.getDeclaredField("type");
+                typeMember.setAccessible(true);
+            } catch (NoSuchFieldException e) {
+                throw new IllegalStateException(e);
+            }
+        }
 
         @Override
-        public Field deserialize(JsonElement element, Type type, JsonDeserializationContext gsonContext) throws JsonParseException {
-            if (element == null || element.isJsonNull()) {
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(final Gson gson, TypeToken<T> type) {
+            if (type.getRawType() != Field.class) {
                 return null;
             }
 
-            JsonObject jsonObject = element.getAsJsonObject();
+            return (TypeAdapter<T>) new TypeAdapter<Field>() {
+
+                @Override
+                public Field read(JsonReader in) throws IOException {
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                        return null;
+                    }
+
+                    return readField(gson, in);
+                }
+
+                @Override
+                @SuppressWarnings("rawtypes")
+                public void write(JsonWriter out, Field field) throws IOException {
+                    if (field == null) {
+                        out.nullValue();
+                        return;
+                    }
+
+                    Class<? extends Field> fieldClass = field.getType().getFieldClass();
+                    TypeAdapter delegate = gson.getDelegateAdapter(FieldTypeAdapterFactory.this, TypeToken.get(fieldClass));
+                    delegate.write(out, field);
+                }
+
+            };
+        }
+
+        private Field readField(Gson gson, JsonReader in) throws IOException {
+            TypeAdapter<JsonElement> elementAdapter = gson.getAdapter(JsonElement.class);
+            HashMap<String, JsonElement> pending = null;
+            Map<String, FieldBinding> members = null;
+            Field result = null;
+
+            try {
+                in.beginObject();
+
+                while (in.hasNext()) {
+                    String name = in.nextName();
+
+                    if (result != null) {
+                        FieldBinding binding = members.get(name);
+
+                        if (binding != null) {
+                            binding.read(in, result);
+                        } else {
+                            in.skipValue();
+                        }
+                    } else if ("type".equals(name)) {
+                        result = newField(parseType(in));
+                        members = getBindings(gson, result.getClass());
+                    } else {
+                        // We don't know the field type yet. Keep the member
+                        // around until we do.
+                        if (pending == null) {
+                            pending = new HashMap<String, JsonElement>();
+                        }
+
+                        pending.put(name, elementAdapter.read(in));
+                    }
+                }
+
+                in.endObject();
+
+                if (result == null) {
+                    result = newField(Field.Type.undefined);
+                    members = getBindings(gson, result.getClass());
+                }
+
+                if (pending != null) {
+                    for (Entry<String, JsonElement> entry : pending.entrySet()) {
+                        FieldBinding binding = members.get(entry.getKey());
+
+                        if (binding != null && !"type".equals(entry.getKey())) {
+                            binding.read(entry.getValue(), result);
+                        }
+                    }
+                }
+            } catch (IllegalAccessException e) {
+                throw new JsonParseException(e);
+            }
+
+            return result;
+        }
+
+        private Field.Type parseType(JsonReader in) throws IOException {
+            if (in.peek() != JsonToken.STRING) {
+                in.skipValue();
+                return Field.Type.undefined;
+            }
 
-            // Ensure that we always have a "values" array, even if it's empty,
-            // as this is needed when creating new items.
-            if (!jsonObject.has("values")) {
-                jsonObject.add("values", new JsonArray());
+            try {
+                return Field.Type.valueOf(in.nextString());
+            } catch (IllegalArgumentException e) {
+                return Field.Type.undefined;
             }
+        }
 
-            Field.Type typeEnum = Field.Type.undefined;
-            JsonElement fieldType = jsonObject.get("type");
+        /**
+         * Creates a new field instance through its public constructor. This
+         * ensures that we always have a "values" list, even if it's empty, as
+         * this is needed when creating new items. The type member is set
+         * explicitly so that unknown types end up as "undefined" rather than
+         * null.
+         */
+        private Field newField(Field.Type type) throws IllegalAccessException {
+            Class<? extends Field> fieldClass = type.getFieldClass();
+            Field field;
 
-            if (fieldType != null && !fieldType.isJsonNull()) {
-                try {
-                    typeEnum = Field.Type.valueOf(fieldType.getAsString());
-                } catch (IllegalArgumentException e) {
+            try {
+                if (type == Field.Type.undefined) {
+                    field = fieldClass.getConstructor().newInstance();
+                } else {
+                    Constructor<? extends Field> constructor = fieldClass.getConstructor(String.class);
+                    field = constructor.newInstance((String) null);
                 }
+            } catch (Exception e) {
+                throw new JsonParseException("Couldn't create field of type " + type, e);
             }
 
-            if (typeEnum == Field.Type.undefined) {
-                // Overwrite the type in the json so we get undefined instead of
-                // null.
-                jsonObject.addProperty("type", Field.Type.undefined.name());
+            typeMember.set(field, type);
+            return field;
+        }
+
+        private Map<String, FieldBinding> getBindings(Gson gson, Class<?> fieldClass) {
+            Map<String, FieldBinding> result = bindings.get(fieldClass);
+
+            if (result == null) {
+                result = new HashMap<String, FieldBinding>();
+
+                for (Class<?> c = fieldClass; c != null && c != Object.class; c = c.getSuperclass()) {
+                    for (java.lang.reflect.Field member : c.getDeclaredFields()) {
+                        int modifiers = member.getModifiers();
+
+                        if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) {
+                            continue;
+                        }
+
+                        SerializedName serializedName = member.getAnnotation(SerializedName.class);
+                        String name = serializedName != null ?
+                                serializedName.value() :
+                                FIELD_NAMING_POLICY.translateName(member);
+
+                        if (!result.containsKey(name)) {
+                            member.setAccessible(true);
+                            TypeAdapter<?> adapter = gson.getAdapter(TypeToken.get(member.getGenericType()));
+                            result.put(name, new FieldBinding(member, adapter));
+                        }
+                    }
+                }
+
+                bindings.put(fieldClass, result);
             }
 
-            return gsonContext.deserialize(jsonObject, typeEnum.getFieldClass());
+            return result;
         }
     }
 
-    private static final class FieldSerializer implements JsonSerializer<Field> {
+    /**
+     * Reads lists of fields into a {@link LazyFieldList}. Each field is copied
+     * token by token, as compact UTF-8 encoded JSON, while its external id and
+     * field id are picked up on the way. No object tree is built, and the
+     * field isn't mapped onto a {@link Field} subclass until it's accessed.
+     * The copy is written by hand, as a {@link JsonWriter} costs more than
+     * the eager parse it would replace.
+     */
+    private static final class LazyFieldListTypeAdapterFactory implements TypeAdapterFactory {
+        private static final TypeToken<List<Field>> LIST_OF_FIELDS = new TypeToken<List<Field>>() {};
+        private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
 
         @Override
-        public JsonElement serialize(Field field, Type type, JsonSerializationContext gsonContext) {
-            return gsonContext.serialize(field, field.getType().getFieldClass());
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            if (!LIST_OF_FIELDS.equals(type)) {
+                return null;
+            }
+
+            final TypeAdapter<List<Field>> eager = gson.getDelegateAdapter(this, LIST_OF_FIELDS);
+
+            return (TypeAdapter<T>) new TypeAdapter<List<Field>>() {
+
+                @Override
+                public List<Field> read(JsonReader in) throws IOException {
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                        return null;
+                    }
+
+                    LazyFieldList result = new LazyFieldList();
+                    StringBuilder buffer = new StringBuilder(1024);
+                    in.beginArray();
+
+                    while (in.hasNext()) {
+                        readSlice(in, buffer, result);
+                    }
+
+                    in.endArray();
+                    return result;
+                }
+
+                @Override
+                public void write(JsonWriter out, List<Field> fields) throws IOException {
+                    eager.write(out, fields);
+                }
+
+            };
+        }
+
+        private static void readSlice(JsonReader in, StringBuilder out, LazyFieldList target) throws IOException {
+            if (in.peek() != JsonToken.BEGIN_OBJECT) {
+                in.skipValue();
+                target.addSlice(null, null, -1L);
+                return;
+            }
+
+            String externalId = null;
+            long fieldId = -1L;
+
+            out.setLength(0);
+            out.append('{');
+            in.beginObject();
+
+            while (in.hasNext()) {
+                if (out.length() > 1) {
+                    out.append(',');
+                }
+
+                String name = in.nextName();
+                appendString(name, out);
+                out.append(':');
+
+                if ("external_id".equals(name) && in.peek() == JsonToken.STRING) {
+                    externalId = in.nextString();
+                    appendString(externalId, out);
+                } else if ("field_id".equals(name) && in.peek() == JsonToken.NUMBER) {
+                    String number = in.nextString();
+                    fieldId = toLong(number);
+                    out.append(number);
+                } else {
+                    copy(in, out);
+                }
+            }
+
+            in.endObject();
+            out.append('}');
+
+            target.addSlice(out.toString().getBytes("UTF-8"), externalId, fieldId);
+        }
+
+        private static void copy(JsonReader in, StringBuilder out) throws IOException {
+            int start;
+
+            switch (in.peek()) {
+            case BEGIN_ARRAY:
+                start = out.length();
+                in.beginArray();
+                out.append('[');
+
+                while (in.hasNext()) {
+                    if (out.length() > start + 1) {
+                        out.append(',');
+                    }
+
+                    copy(in, out);
+                }
+
+                in.endArray();
+                out.append(']');
+                break;
+            case BEGIN_OBJECT:
+                start = out.length();
+                in.beginObject();
+                out.append('{');
+
+                while (in.hasNext()) {
+                    if (out.length() > start + 1) {
+                        out.append(',');
+                    }
+
+                    appendString(in.nextName(), out);
+                    out.append(':');
+                    copy(in, out);
+                }
+
+                in.endObject();
+                out.append('}');
+                break;
+            case BOOLEAN:
+                out.append(in.nextBoolean());
+                break;
+            case NULL:
+                in.nextNull();
+                out.append("null");
+                break;
+            case NUMBER:
+                // The number is kept exactly as written.
+                out.append(in.nextString());
+                break;
+            case STRING:
+                appendString(in.nextString(), out);
+                break;
+            default:
+                in.skipValue();
+                break;
+            }
+        }
+
+        private static void appendString(String value, StringBuilder out) {
+            int length = value.length();
+            int last = 0;
+
+            out.append('"');
+
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+
+                if (c == '"' || c == '\\') {
+                    out.append(value, last, i).append('\\').append(c);
+                    last = i + 1;
+                } else if (c < 0x20) {
+                    out.append(value, last, i).append("\\u00").append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xf]);
+                    last = i + 1;
+                }
+            }
+
+            out.append(value, last, length).append('"');
         }
 
+        private static long toLong(String number) {
+            try {
+                return Long.parseLong(number);
+            } catch (NumberFormatException e) {
+                return (long) Double.parseDouble(number);
+            }
+        }
     }
 
-    private static final Gson GSON = new GsonBuilder()
-            .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
-            .setDateFormat("yyyy-MM-dd HH:mm:ss")
-            .registerTypeAdapter(Field.class, new FieldDeserializer())
-            .registerTypeAdapter(Field.class, new FieldSerializer())
-            .disableHtmlEscaping()
-            .create();
+    private static final FieldNamingPolicy FIELD_NAMING_POLICY = FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES;
+
+    private static final Gson GSON = newGson(false);
+
+    private static final Gson LAZY_GSON = newGson(true);
+
+    private static Gson newGson(boolean lazyFields) {
+        GsonBuilder builder = new GsonBuilder()
+                .setFieldNamingPolicy(FIELD_NAMING_POLICY)
+                .setDateFormat("yyyy-MM-dd HH:mm:ss")
+                .registerTypeAdapterFactory(new FieldTypeAdapterFactory())
+                .disableHtmlEscaping();
+
+        if (lazyFields) {
+            builder.registerTypeAdapterFactory(new LazyFieldListTypeAdapterFactory());
+        }
+
+        return builder.create();
+    }
 
     public static <T> T fromJson(String json, Class<T> classOfResult) {
         return GSON.fromJson(json, classOfResult);
     }
 
+    /**
+     * Parses the JSON provided by the given reader without building the full
+     * JSON string first. The caller is responsible for closing the reader.
+     */
+    public static <T> T fromJson(Reader reader, Class<T> classOfResult) {
+        return GSON.fromJson(reader, classOfResult);
+    }
+
+    /**
+     * Parses the JSON provided by the given reader, as described by
+     * {@link JsonParser#fromJson(Reader, Class)}, optionally with lazy fields.
+     * Lazy fields of items (and applications) are kept as compact UTF-8
+     * encoded JSON and only mapped onto domain objects once they are accessed.
+     * This saves work when only a few fields of each item are ever read, e.g.
+     * in list views. The JSON of an unread field takes less memory than the
+     * parsed field would, but reading a field costs a parse of its JSON the
+     * first time.
+     * 
+     * @param lazyFields
+     *        Boolean true to parse fields lazily, false to parse them eagerly.
+     */
+    public static <T> T fromJson(Reader reader, Class<T> classOfResult, boolean lazyFields) {
+        return (lazyFields ? LAZY_GSON : GSON).fromJson(reader, classOfResult);
+    }
+
+    /**
+     * Maps an already parsed JSON tree onto the given type.
+     */
+    public static <T> T fromJson(JsonElement json, Class<T> classOfResult) {
+        return GSON.fromJson(json, classOfResult);
+    }
+
     public static <T> String toJson(T item) {
         return GSON.toJson(item);
     }
+
+    /**
+     * Serializes the given object straight into the given writer, without
+     * building the full JSON string (or tree) first.
+     */
+    public static <T> void toJson(T item, JsonWriter writer) {
+        if (item != null) {
+            GSON.toJson(item, item.getClass(), writer);
+        } else {
+            GSON.toJson(JsonNull.INSTANCE, writer);
+        }
+    }
 }
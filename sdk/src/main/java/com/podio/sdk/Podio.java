@@ -24,6 +24,7 @@ package com.podio.sdk;
 
 import android.content.Context;
 
+import com.android.volley.toolbox.HttpStack;
 import com.podio.sdk.Request.ErrorListener;
 import com.podio.sdk.Request.SessionListener;
 import com.podio.sdk.provider.ApplicationProvider;
@@ -39,7 +40,8 @@ import com.podio.sdk.provider.UserProvider;
 import com.podio.sdk.provider.ViewProvider;
 import com.podio.sdk.push.FayePushClient;
 import com.podio.sdk.push.PushClient;
-import com.podio.sdk.push.VolleyLongPollingTransport;
+import com.podio.sdk.push.WebSocketTransport;
+import com.podio.sdk.volley.OkHttpStack;
 import com.podio.sdk.volley.VolleyClient;
 import com.podio.sdk.volley.VolleyRequest;
 
@@ -209,11 +211,35 @@ public class Podio {
      *         Optional custom SSL socket factory to use in the HTTP requests.
      */
     public static void setup(Context context, String scheme, String authority, String clientId, String clientSecret, SSLSocketFactory sslSocketFactory) {
-        restClient.setup(context, scheme, authority, clientId, clientSecret, sslSocketFactory);
+        setup(context, scheme, authority, clientId, clientSecret, sslSocketFactory, null);
+    }
+
+    /**
+     * Initializes the Podio SDK with the given client credentials and a custom HTTP stack. This
+     * method MUST be called before any other request is made.
+     *
+     * @param context
+     *         The context to initialize the cache database and network clients in.
+     * @param authority
+     *         The host the SDK will target with its requests.
+     * @param clientId
+     *         The pre-shared Podio client id.
+     * @param clientSecret
+     *         The corresponding Podio client secret.
+     * @param sslSocketFactory
+     *         Optional custom SSL socket factory to use in the HTTP requests and the push
+     *         WebSocket.
+     * @param httpStack
+     *         Optional HTTP stack to send the requests through, e.g. an {@link OkHttpStack}.
+     *
+     * @see VolleyClient#setup(Context, String, String, String, String, SSLSocketFactory, HttpStack)
+     */
+    public static void setup(Context context, String scheme, String authority, String clientId, String clientSecret, SSLSocketFactory sslSocketFactory, HttpStack httpStack) {
+        restClient.setup(context, scheme, authority, clientId, clientSecret, sslSocketFactory, httpStack);
 
         // TODO: Enable proper configuration of push end point.
         String pushUrl = scheme + "://" + authority.replace("api.", "push.") + "/faye";
-        push = new FayePushClient(new VolleyLongPollingTransport(context, pushUrl));
+        push = new FayePushClient(new WebSocketTransport(context, pushUrl, sslSocketFactory));
 
         // Providers relying on a rest client in order to operate properly.
         application.setClient(restClient);
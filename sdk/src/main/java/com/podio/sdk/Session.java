@@ -31,6 +31,7 @@ public class Session {
     private static String accessToken;
     private static String refreshToken;
     private static long expires;
+    private static String ref;
 
     public static String accessToken() {
         return accessToken;
@@ -40,6 +41,17 @@ public class Session {
         return expires;
     }
 
+    /**
+     * Returns what the session was authenticated as, e.g. "user:1234", as
+     * stated by the API when the session was created or refreshed.
+     * 
+     * @return The type and id of the authenticated entity, or null if not
+     *         known.
+     */
+    public static String ref() {
+        return ref;
+    }
+
     public static String refreshToken() {
         return refreshToken;
     }
@@ -58,13 +70,18 @@ public class Session {
                 long expiresIn = jsonObject.optLong("expires_in", 0L);
                 expires = Utils.currentTimeSeconds() + expiresIn;
             }
+
+            JSONObject refObject = jsonObject.optJSONObject("ref");
+            ref = refObject != null && refObject.has("type") && refObject.has("id") ?
+                    refObject.optString("type") + ":" + refObject.optString("id") :
+                    null;
         } catch (JSONException e) {
             // Input JSON was most likely invalid. Fallback to defaults.
-            accessToken = refreshToken = null;
+            accessToken = refreshToken = ref = null;
             expires = 0;
         } catch (NullPointerException e) {
             // Input JSON was most likely a null pointer. Fallback to defaults.
-            accessToken = refreshToken = null;
+            accessToken = refreshToken = ref = null;
             expires = 0;
         }
     }
@@ -73,6 +90,7 @@ public class Session {
         Session.accessToken = accessToken;
         Session.refreshToken = refreshToken;
         Session.expires = expires;
+        Session.ref = null;
     }
 
     private Session() {
@@ -21,6 +21,9 @@
  */
 package com.podio.sdk;
 
+import java.util.Collection;
+import java.util.Map;
+
 /**
  * Definition of capabilities for a Store object.
  * 
@@ -53,6 +56,20 @@ public interface Store {
      */
     public <T> Request<T> get(Object key, Class<T> classOfValue);
 
+    /**
+     * Enables means of retrieving several objects from the store at once, as
+     * one single operation with one single callback.
+     * 
+     * @param keys
+     *        The keys of the objects to retrieve.
+     * @param classOfValue
+     *        The Class definition of any disk persisted JSON.
+     * @return The future task which enables hooking in callback listeners. The
+     *         delivered map holds the found objects by key, in the order of
+     *         the given keys. Keys without objects are left out.
+     */
+    public <T> Request<Map<Object, T>> getAll(Collection<?> keys, Class<T> classOfValue);
+
     /**
      * Enables means of adding or replacing an item with the given key in the
      * store.
@@ -65,6 +82,16 @@ public interface Store {
      */
     public Request<Void> set(Object key, Object value);
 
+    /**
+     * Enables means of adding or replacing several items in the store at once,
+     * as one single operation with one single callback.
+     * 
+     * @param values
+     *        The objects to cache, by key.
+     * @return The future task which enables hooking in callback listeners.
+     */
+    public Request<Void> setAll(Map<?, ?> values);
+
     /**
      * Enables means of removing an object with the given key from the store.
      * 
@@ -74,4 +101,14 @@ public interface Store {
      */
     public Request<Void> remove(Object key);
 
+    /**
+     * Enables means of removing several objects from the store at once, as one
+     * single operation with one single callback.
+     * 
+     * @param keys
+     *        The keys of the objects to remove.
+     * @return The future task which enables hooking in callback listeners.
+     */
+    public Request<Void> removeAll(Collection<?> keys);
+
 }
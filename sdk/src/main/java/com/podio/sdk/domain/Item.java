@@ -23,6 +23,7 @@
 package com.podio.sdk.domain;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -31,6 +32,7 @@ import java.util.Map.Entry;
 
 import com.podio.sdk.domain.field.Field;
 import com.podio.sdk.domain.field.FieldTypeMismatchException;
+import com.podio.sdk.domain.field.LazyFieldList;
 import com.podio.sdk.domain.field.Pushable;
 import com.podio.sdk.internal.Utils;
 
@@ -57,6 +59,20 @@ public class Item implements Pushable {
             sort_nulls_last = false;
         }
 
+        /**
+         * Creates a copy of the given filter data. The constraints map is
+         * copied, the constraint values themselves are shared.
+         */
+        public FilterData(FilterData filterData) {
+            this.filters = new HashMap<String, Object>(filterData.filters);
+            this.sort_desc = filterData.sort_desc;
+            this.limit = filterData.limit;
+            this.offset = filterData.offset;
+            this.remember = filterData.remember;
+            this.sort_by = filterData.sort_by;
+            this.sort_nulls_last = filterData.sort_nulls_last;
+        }
+
         public void addConstraint(String key, Object value) {
             if (Utils.notEmpty(key) && value != null) {
                 filters.put(key, value);
@@ -138,6 +154,16 @@ public class Item implements Pushable {
         public List<Item> getItems() {
             return items != null ? new ArrayList<Item>(items) : new ArrayList<Item>();
         }
+
+        /**
+         * Returns a read-only view of the items in this result. As opposed to
+         * {@link FilterResult#getItems()}, no copy is made.
+         * 
+         * @return An unmodifiable list of items. Never null.
+         */
+        public List<Item> getItemsView() {
+            return items != null ? Collections.unmodifiableList(items) : Collections.<Item> emptyList();
+        }
     }
 
     public static class PushData {
@@ -211,6 +237,15 @@ public class Item implements Pushable {
     // hence the 'transient' keyword.
     private transient final HashMap<String, List<Object>> data = new HashMap<String, List<Object>>();
 
+    // Lazily built lookup tables, mapping external ids and field ids to the
+    // position of the corresponding field in the fields list, and cached
+    // read-only views of the lists. None of them are part of the JSON.
+    private transient volatile HashMap<String, Integer> externalIdIndex;
+    private transient volatile HashMap<Long, Integer> fieldIdIndex;
+    private transient volatile List<Field> fieldsView;
+    private transient volatile List<Right> rightsView;
+    private transient volatile List<String> tagsView;
+
     /**
      * Creates a new, empty {@link Item} with no fields.
      */
@@ -267,7 +302,7 @@ public class Item implements Pushable {
      *         If the passed value doesn't match the field with the given name.
      */
     public void addValue(String field, Object value) throws FieldTypeMismatchException {
-        Field f = findField(field, fields);
+        Field f = findField(field);
 
         if (f != null) {
             f.addValue(value);
@@ -327,6 +362,47 @@ public class Item implements Pushable {
         return external_id;
     }
 
+    /**
+     * Returns the field with the given external id.
+     * 
+     * @param externalId
+     *        The external id of the field.
+     * @return The field domain object if found, or null.
+     */
+    public Field getField(String externalId) {
+        return findField(externalId);
+    }
+
+    /**
+     * Returns the field with the given field id.
+     * 
+     * @param fieldId
+     *        The id of the field.
+     * @return The field domain object if found, or null.
+     */
+    public Field getField(long fieldId) {
+        Integer position = getFieldIdIndex().get(fieldId);
+        return position != null ? fields.get(position) : null;
+    }
+
+    /**
+     * Returns a read-only view of the fields of this item. Unlike
+     * {@link Item#getFields()} no copy is made, hence this is the cheaper
+     * option when the caller only needs to read the fields.
+     * 
+     * @return An unmodifiable list of fields. Never null.
+     */
+    public List<Field> getFieldsView() {
+        List<Field> view = fieldsView;
+
+        if (view == null) {
+            view = fields != null ? Collections.unmodifiableList(fields) : Collections.<Field> emptyList();
+            fieldsView = view;
+        }
+
+        return view;
+    }
+
     public List<Field> getFields() {
         return fields != null ? new ArrayList<Field>(fields) : new ArrayList<Field>();
     }
@@ -364,10 +440,43 @@ public class Item implements Pushable {
         return Utils.getNative(revision, -1L);
     }
 
+    /**
+     * Returns a read-only view of the rights the user has for this item.
+     * 
+     * @return An unmodifiable list of rights. Never null.
+     */
+    public List<Right> getRightsView() {
+        List<Right> view = rightsView;
+
+        if (view == null) {
+            view = rights != null ? Collections.unmodifiableList(rights) : Collections.<Right> emptyList();
+            rightsView = view;
+        }
+
+        return view;
+    }
+
     public List<String> getTags() {
         return tags != null ? new ArrayList<String>(tags) : new ArrayList<String>();
     }
 
+    /**
+     * Returns a read-only view of the tags of this item. Unlike
+     * {@link Item#getTags()} no copy is made.
+     * 
+     * @return An unmodifiable list of tags. Never null.
+     */
+    public List<String> getTagsView() {
+        List<String> view = tagsView;
+
+        if (view == null) {
+            view = tags != null ? Collections.unmodifiableList(tags) : Collections.<String> emptyList();
+            tagsView = view;
+        }
+
+        return view;
+    }
+
     public String getTitle() {
         return title;
     }
@@ -387,7 +496,7 @@ public class Item implements Pushable {
      */
     public Object getValue(String field, int index) {
         if (Utils.notEmpty(field)) {
-            Field f = findField(field, fields);
+            Field f = findField(field);
 
             if (f != null) {
                 return f.getValue(index);
@@ -420,7 +529,7 @@ public class Item implements Pushable {
      */
     public Object getVerifiedValue(String field, int index) {
         if (Utils.notEmpty(field)) {
-            Field f = findField(field, fields);
+            Field f = findField(field);
 
             if (f != null) {
                 return f.getValue(index);
@@ -477,7 +586,7 @@ public class Item implements Pushable {
      *         If the passed value doesn't match the field with the given name.
      */
     public void removeValue(String field, Object value) throws FieldTypeMismatchException {
-        Field f = findField(field, fields);
+        Field f = findField(field);
 
         if (f != null) {
             f.removeValue(value);
@@ -504,19 +613,78 @@ public class Item implements Pushable {
      *        The external id of the field to find.
      * @return The field domain object if found, or null.
      */
-    private Field findField(String externalId, List<Field> source) {
+    private Field findField(String externalId) {
         if (Utils.isEmpty(externalId)) {
             throw new IllegalArgumentException("externalId cannot be empty");
         }
 
-        if (source != null) {
-            for (Field field : source) {
-                if (field != null && externalId.equals(field.getExternalId())) {
-                    return field;
+        Integer position = getExternalIdIndex().get(externalId);
+        return position != null ? fields.get(position) : null;
+    }
+
+    /**
+     * Returns the external id to position index, building it on first use.
+     * The fields list never changes once the item is created, so the index
+     * never needs to be rebuilt. Lazily parsed fields are indexed without
+     * being parsed.
+     */
+    private HashMap<String, Integer> getExternalIdIndex() {
+        HashMap<String, Integer> index = externalIdIndex;
+
+        if (index == null) {
+            index = new HashMap<String, Integer>();
+            int size = fields != null ? fields.size() : 0;
+
+            for (int i = 0; i < size; i++) {
+                String externalId;
+
+                if (fields instanceof LazyFieldList) {
+                    externalId = ((LazyFieldList) fields).getExternalId(i);
+                } else {
+                    Field field = fields.get(i);
+                    externalId = field != null ? field.getExternalId() : null;
+                }
+
+                // Keep the first occurrence, just as a linear search would.
+                if (externalId != null && !index.containsKey(externalId)) {
+                    index.put(externalId, i);
+                }
+            }
+
+            externalIdIndex = index;
+        }
+
+        return index;
+    }
+
+    /**
+     * Returns the field id to position index, building it on first use.
+     */
+    private HashMap<Long, Integer> getFieldIdIndex() {
+        HashMap<Long, Integer> index = fieldIdIndex;
+
+        if (index == null) {
+            index = new HashMap<Long, Integer>();
+            int size = fields != null ? fields.size() : 0;
+
+            for (int i = 0; i < size; i++) {
+                long fieldId;
+
+                if (fields instanceof LazyFieldList) {
+                    fieldId = ((LazyFieldList) fields).getFieldId(i);
+                } else {
+                    Field field = fields.get(i);
+                    fieldId = field != null ? field.getFieldId() : -1L;
+                }
+
+                if (fieldId != -1L && !index.containsKey(fieldId)) {
+                    index.put(fieldId, i);
                 }
             }
+
+            fieldIdIndex = index;
         }
 
-        return null;
+        return index;
     }
 }
@@ -0,0 +1,125 @@
+/*
+ *  Copyright (C) 2014 Copyright Citrix Systems, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ *  this software and associated documentation files (the "Software"), to deal in 
+ *  the Software without restriction, including without limitation the rights to 
+ *  use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+ *  of the Software, and to permit persons to whom the Software is furnished to 
+ *  do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all 
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *  SOFTWARE.
+ */
+
+package com.podio.sdk.domain.field;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+
+import com.podio.sdk.JsonParser;
+
+/**
+ * A read-only list of fields that keeps the compact, UTF-8 encoded JSON of
+ * each field and only parses it into a {@link Field} domain object once that
+ * very field is requested. The external id and the field id are known up
+ * front, enabling lookups without materializing any other fields.
+ */
+public final class LazyFieldList extends AbstractList<Field> {
+
+    private static final class Slice {
+        private final String externalId;
+        private final long fieldId;
+        private byte[] json;
+        private Field field;
+
+        private Slice(byte[] json, String externalId, long fieldId) {
+            this.json = json;
+            this.externalId = externalId;
+            this.fieldId = fieldId;
+        }
+    }
+
+    private final ArrayList<Slice> slices;
+
+    public LazyFieldList() {
+        this.slices = new ArrayList<Slice>();
+    }
+
+    /**
+     * Adds the JSON of a field to the end of this list.
+     * 
+     * @param json
+     *        The UTF-8 encoded JSON object describing the field, or null.
+     * @param externalId
+     *        The external id of the field, as found in the JSON.
+     * @param fieldId
+     *        The field id of the field, as found in the JSON.
+     */
+    public void addSlice(byte[] json, String externalId, long fieldId) {
+        slices.add(new Slice(json, externalId, fieldId));
+    }
+
+    /**
+     * Returns the field at the given position, parsing it from its JSON the
+     * first time it's requested. The JSON is released once parsed.
+     */
+    @Override
+    public synchronized Field get(int index) {
+        Slice slice = slices.get(index);
+
+        if (slice.field == null && slice.json != null) {
+            try {
+                InputStreamReader reader = new InputStreamReader(new ByteArrayInputStream(slice.json), "UTF-8");
+                slice.field = JsonParser.fromJson(reader, Field.class);
+                slice.json = null;
+            } catch (UnsupportedEncodingException e) {
+                // UTF-8 is always supported.
+                throw new IllegalStateException(e);
+            }
+        }
+
+        return slice.field;
+    }
+
+    /**
+     * Returns the external id of the field at the given position without
+     * parsing the field.
+     */
+    public String getExternalId(int index) {
+        return slices.get(index).externalId;
+    }
+
+    /**
+     * Returns the field id of the field at the given position without parsing
+     * the field.
+     */
+    public long getFieldId(int index) {
+        return slices.get(index).fieldId;
+    }
+
+    /**
+     * Tells whether the field at the given position has been parsed yet.
+     */
+    public synchronized boolean isMaterialized(int index) {
+        Slice slice = slices.get(index);
+        return slice.field != null || slice.json == null;
+    }
+
+    @Override
+    public int size() {
+        return slices.size();
+    }
+
+}
@@ -0,0 +1,217 @@
+/*
+ *  Copyright (C) 2014 Copyright Citrix Systems, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ *  this software and associated documentation files (the "Software"), to deal in 
+ *  the Software without restriction, including without limitation the rights to 
+ *  use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+ *  of the Software, and to permit persons to whom the Software is furnished to 
+ *  do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all 
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *  SOFTWARE.
+ */
+
+package com.podio.sdk.internal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Delivers callbacks on the main thread, or on a given {@link Executor}, on
+ * behalf of all {@link CallbackManager} instances. Deliveries that arrive
+ * before the previously posted message has been handled are coalesced into
+ * that message, so a burst of results (e.g. from the local store or the push
+ * client) costs one single main looper message. One and the same main thread
+ * handler is used for all messages and the delivery objects are recycled.
+ */
+final class CallbackDispatcher {
+
+    /**
+     * The max number of idle delivery objects to keep for reuse.
+     */
+    private static final int MAX_POOL_SIZE = 32;
+
+    /**
+     * A pending delivery of a result or an error to a callback manager.
+     */
+    private static final class Delivery {
+        private CallbackManager<?> callbackManager;
+        private Object result;
+        private Throwable error;
+        private boolean isError;
+
+        @SuppressWarnings("unchecked")
+        private void deliver() {
+            CallbackManager<Object> target = (CallbackManager<Object>) callbackManager;
+
+            if (isError) {
+                target.deliverError(error);
+            } else {
+                target.deliverResult(result);
+            }
+        }
+
+        private void clear() {
+            callbackManager = null;
+            result = null;
+            error = null;
+            isError = false;
+        }
+    }
+
+    private final ArrayDeque<Delivery> pool;
+    private final Runnable flushRunnable;
+
+    private ArrayList<Delivery> pending;
+    private ArrayList<Delivery> spare;
+    private boolean isFlushScheduled;
+    private Executor executor;
+    private Handler handler;
+
+    CallbackDispatcher() {
+        this.pool = new ArrayDeque<Delivery>();
+        this.pending = new ArrayList<Delivery>();
+        this.spare = new ArrayList<Delivery>();
+        this.isFlushScheduled = false;
+        this.executor = null;
+        this.handler = null;
+        this.flushRunnable = new Runnable() {
+
+            @Override
+            public void run() {
+                flush();
+            }
+
+        };
+    }
+
+    /**
+     * Sets the executor to deliver callbacks on.
+     * 
+     * @param executor
+     *        The executor, or null to deliver on the main thread (default).
+     */
+    synchronized void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Schedules the delivery of a result or an error to the given callback
+     * manager.
+     */
+    void dispatch(CallbackManager<?> callbackManager, Object result, Throwable error, boolean isError) {
+        Executor flushExecutor = null;
+        Handler flushHandler = null;
+
+        synchronized (this) {
+            Delivery delivery = pool.poll();
+
+            if (delivery == null) {
+                delivery = new Delivery();
+            }
+
+            delivery.callbackManager = callbackManager;
+            delivery.result = result;
+            delivery.error = error;
+            delivery.isError = isError;
+            pending.add(delivery);
+
+            if (isFlushScheduled) {
+                // Ride along with the message that is already on its way.
+                return;
+            }
+
+            isFlushScheduled = true;
+
+            if (executor != null) {
+                flushExecutor = executor;
+            } else {
+                if (handler == null) {
+                    handler = new Handler(Looper.getMainLooper());
+                }
+
+                flushHandler = handler;
+            }
+        }
+
+        // Post outside the lock, as an executor may run the flush inline.
+        if (flushExecutor != null) {
+            flushExecutor.execute(flushRunnable);
+        } else {
+            flushHandler.post(flushRunnable);
+        }
+    }
+
+    /**
+     * Delivers all pending callbacks, in the order they were dispatched. A
+     * callback that throws doesn't keep the callbacks after it from being
+     * delivered, the first exception is rethrown once all are done.
+     */
+    private void flush() {
+        ArrayList<Delivery> deliveries;
+        RuntimeException runtimeException = null;
+        Error error = null;
+
+        synchronized (this) {
+            // An executor may run several flushes at once, so a list is only
+            // reused once it's completely delivered.
+            deliveries = pending;
+            pending = spare != null ? spare : new ArrayList<Delivery>();
+            spare = null;
+            isFlushScheduled = false;
+        }
+
+        for (int i = 0, count = deliveries.size(); i < count; i++) {
+            try {
+                deliveries.get(i).deliver();
+            } catch (RuntimeException e) {
+                if (runtimeException == null && error == null) {
+                    runtimeException = e;
+                }
+            } catch (Error e) {
+                if (runtimeException == null && error == null) {
+                    error = e;
+                }
+            }
+        }
+
+        synchronized (this) {
+            for (int i = 0, count = deliveries.size(); i < count; i++) {
+                Delivery delivery = deliveries.get(i);
+                delivery.clear();
+
+                if (pool.size() < MAX_POOL_SIZE) {
+                    pool.offer(delivery);
+                }
+            }
+
+            deliveries.clear();
+
+            if (spare == null) {
+                spare = deliveries;
+            }
+        }
+
+        if (runtimeException != null) {
+            throw runtimeException;
+        }
+
+        if (error != null) {
+            throw error;
+        }
+    }
+
+}
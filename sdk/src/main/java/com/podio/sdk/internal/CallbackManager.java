@@ -22,18 +22,32 @@
 package com.podio.sdk.internal;
 
 import java.util.ArrayList;
-
-import android.os.Handler;
-import android.os.Looper;
+import java.util.concurrent.Executor;
 
 import com.podio.sdk.Request.ErrorListener;
 import com.podio.sdk.Request.ResultListener;
 
 public class CallbackManager<T> {
     private static final ArrayList<ErrorListener> GLOBAL_ERROR_LISTENERS;
+    private static final CallbackDispatcher DISPATCHER;
 
     static {
         GLOBAL_ERROR_LISTENERS = new ArrayList<ErrorListener>();
+        DISPATCHER = new CallbackDispatcher();
+    }
+
+    /**
+     * Sets the executor on which asynchronous results and errors are delivered
+     * to the listeners, instead of the main thread. Callbacks arriving in a
+     * burst are delivered in one go, in the order they arrived, but a
+     * multi-threaded executor may run such batches concurrently.
+     * 
+     * @param executor
+     *        The executor to deliver callbacks on, or null to deliver them on
+     *        the main thread (default).
+     */
+    public static void setCallbackExecutor(Executor executor) {
+        DISPATCHER.setExecutor(executor);
     }
 
     public static ErrorListener addGlobalErrorListener(ErrorListener errorListener) {
@@ -98,16 +112,15 @@ public class CallbackManager<T> {
         }
     }
 
-    public void deliverErrorOnMainThread(final Throwable error) {
-        Handler handler = new Handler(Looper.getMainLooper());
-        handler.post(new Runnable() {
-
-            @Override
-            public void run() {
-                deliverError(error);
-            }
-
-        });
+    /**
+     * Delivers the error on the main thread, or on the executor set through
+     * {@link CallbackManager#setCallbackExecutor(Executor)}.
+     * 
+     * @param error
+     *        The error to deliver.
+     */
+    public void deliverErrorOnMainThread(Throwable error) {
+        DISPATCHER.dispatch(this, null, error, true);
     }
 
     public void deliverResult(T result) {
@@ -121,16 +134,15 @@ public class CallbackManager<T> {
         }
     }
 
-    public void deliverResultOnMainThread(final T result) {
-        Handler handler = new Handler(Looper.getMainLooper());
-        handler.post(new Runnable() {
-
-            @Override
-            public void run() {
-                deliverResult(result);
-            }
-
-        });
+    /**
+     * Delivers the result on the main thread, or on the executor set through
+     * {@link CallbackManager#setCallbackExecutor(Executor)}.
+     * 
+     * @param result
+     *        The result to deliver.
+     */
+    public void deliverResultOnMainThread(T result) {
+        DISPATCHER.dispatch(this, result, null, false);
     }
 
     public ResultListener<T> removeResultListener(ResultListener<T> listener) {
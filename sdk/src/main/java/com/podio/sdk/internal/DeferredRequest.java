@@ -0,0 +1,252 @@
+/*
+ *  Copyright (C) 2014 Copyright Citrix Systems, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ *  this software and associated documentation files (the "Software"), to deal in 
+ *  the Software without restriction, including without limitation the rights to 
+ *  use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+ *  of the Software, and to permit persons to whom the Software is furnished to 
+ *  do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all 
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *  SOFTWARE.
+ */
+package com.podio.sdk.internal;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import com.podio.sdk.Request;
+
+/**
+ * A {@link Request} implementation that isn't executed on its own, but rather
+ * completed by someone else once the actual result is known. This enables the
+ * SDK to hand out one request future per caller while serving several callers
+ * with one and the same underlying operation. Session listeners are handed on
+ * to the requests doing the actual network calls, see
+ * {@link DeferredRequest#withSessionSource(Request)}.
+ * 
+ * @param <T>
+ *        The type of the result.
+ */
+public class DeferredRequest<T> extends FutureTask<T> implements Request<T> {
+
+    /**
+     * The delegate callback handler that will manage our callback interfaces
+     * for us.
+     */
+    private final CallbackManager<T> callbackManager;
+
+    /**
+     * The delivered result.
+     */
+    private T result;
+
+    /**
+     * The delivered error.
+     */
+    private Throwable error;
+
+    /**
+     * The session listeners of this request.
+     */
+    private final ArrayList<SessionListener> sessionListeners;
+
+    /**
+     * The requests the session listeners are forwarded to.
+     */
+    private final ArrayList<Request<?>> sessionSources;
+
+    /**
+     * Whether the listeners are called on the thread completing this request,
+     * rather than on the main thread.
+     */
+    private final boolean doDeliverDirectly;
+
+    public DeferredRequest() {
+        this(false);
+    }
+
+    /**
+     * @param doDeliverDirectly
+     *        Whether to call the listeners on the thread completing this
+     *        request, rather than posting them to the main thread. This saves
+     *        a main looper hop for requests that are completed on the main
+     *        thread anyway.
+     */
+    protected DeferredRequest(boolean doDeliverDirectly) {
+        super(new Callable<T>() {
+
+            @Override
+            public T call() throws Exception {
+                throw new UnsupportedOperationException("A deferred request can't be executed.");
+            }
+
+        });
+
+        this.callbackManager = new CallbackManager<T>();
+        this.sessionListeners = new ArrayList<SessionListener>();
+        this.sessionSources = new ArrayList<Request<?>>();
+        this.doDeliverDirectly = doDeliverDirectly;
+    }
+
+    /**
+     * Completes this request with the given result. Any result listeners will
+     * be called on the main thread, or right away if so requested at
+     * construction.
+     * 
+     * @param result
+     *        The result to deliver.
+     */
+    public void deliverResult(T result) {
+        set(result);
+    }
+
+    /**
+     * Completes this request with the given error. Any error listeners will be
+     * called on the main thread, or right away if so requested at
+     * construction.
+     * 
+     * @param error
+     *        The cause of the failure.
+     */
+    public void deliverError(Throwable error) {
+        setException(error);
+    }
+
+    /**
+     * Forwards the outcome of the given request to this request.
+     * 
+     * @param request
+     *        The request to follow.
+     * @return This request, to enable convenient chaining.
+     */
+    public DeferredRequest<T> follow(Request<T> request) {
+        request.withResultListener(new ResultListener<T>() {
+
+            @Override
+            public boolean onRequestPerformed(T content) {
+                deliverResult(content);
+                return false;
+            }
+
+        });
+
+        request.withErrorListener(new ErrorListener() {
+
+            @Override
+            public boolean onErrorOccured(Throwable cause) {
+                deliverError(cause);
+                return false;
+            }
+
+        });
+
+        return this;
+    }
+
+    /**
+     * Forwards the session listeners of this request, both present and
+     * future ones, to the given request. This is meant for the request doing
+     * the network call this request is waiting for, which may refresh the
+     * session on its way.
+     * 
+     * @param request
+     *        The request to forward the session listeners to.
+     * @return This request, to enable convenient chaining.
+     */
+    public synchronized DeferredRequest<T> withSessionSource(Request<?> request) {
+        sessionSources.add(request);
+
+        for (SessionListener sessionListener : sessionListeners) {
+            request.withSessionListener(sessionListener);
+        }
+
+        return this;
+    }
+
+    /**
+     * Makes sure the result listeners are called properly when a result is
+     * delivered.
+     * 
+     * @see java.util.concurrent.FutureTask#done()
+     */
+    @Override
+    protected void done() {
+        super.done();
+
+        try {
+            result = get();
+            error = null;
+
+            if (doDeliverDirectly) {
+                callbackManager.deliverResult(result);
+            } else {
+                callbackManager.deliverResultOnMainThread(result);
+            }
+        } catch (ExecutionException e) {
+            result = null;
+            error = e.getCause();
+            notifyErrorListeners();
+        } catch (InterruptedException e) {
+            result = null;
+            error = e;
+            notifyErrorListeners();
+        } catch (CancellationException e) {
+            result = null;
+            error = e;
+        }
+    }
+
+    private void notifyErrorListeners() {
+        if (doDeliverDirectly) {
+            callbackManager.deliverError(error);
+        } else {
+            callbackManager.deliverErrorOnMainThread(error);
+        }
+    }
+
+    @Override
+    public Request<T> withResultListener(ResultListener<T> resultListener) {
+        callbackManager.addResultListener(resultListener, isDone() && error == null, result);
+        return this;
+    }
+
+    @Override
+    public Request<T> withErrorListener(ErrorListener errorListener) {
+        callbackManager.addErrorListener(errorListener, isDone() && error != null, error);
+        return this;
+    }
+
+    /**
+     * Adds a session listener, which is forwarded to the session sources of
+     * this request. It's never called if there are no such sources, as the
+     * session then can't change on behalf of this request.
+     * 
+     * @see DeferredRequest#withSessionSource(Request)
+     */
+    @Override
+    public synchronized Request<T> withSessionListener(SessionListener sessionListener) {
+        if (sessionListener != null) {
+            sessionListeners.add(sessionListener);
+
+            for (Request<?> request : sessionSources) {
+                request.withSessionListener(sessionListener);
+            }
+        }
+
+        return this;
+    }
+
+}
@@ -22,6 +22,8 @@
 
 package com.podio.sdk.internal;
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Collection;
@@ -206,6 +208,32 @@ public class Utils {
         }
     }
 
+    /**
+     * Calculates the SHA-1 digest of the given bytes.
+     * 
+     * @return The digest as a hexadecimal string, or null if there are no
+     *         bytes or if the platform doesn't support SHA-1.
+     */
+    public static String sha1(byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(bytes);
+            StringBuilder result = new StringBuilder(digest.length * 2);
+
+            for (byte b : digest) {
+                result.append(Character.forDigit((b >> 4) & 0xf, 16));
+                result.append(Character.forDigit(b & 0xf, 16));
+            }
+
+            return result.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
     @SuppressLint("SimpleDateFormat")
     private static SimpleDateFormat getSimpleDateFormat(String pattern) {
         TimeZone timeZone = TimeZone.getTimeZone("UTC");
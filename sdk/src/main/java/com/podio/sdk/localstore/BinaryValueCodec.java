@@ -0,0 +1,596 @@
+/*
+ *  Copyright (C) 2014 Copyright Citrix Systems, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ *  this software and associated documentation files (the "Software"), to deal in 
+ *  the Software without restriction, including without limitation the rights to 
+ *  use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+ *  of the Software, and to permit persons to whom the Software is furnished to 
+ *  do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all 
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *  SOFTWARE.
+ */
+package com.podio.sdk.localstore;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonWriter;
+import com.podio.sdk.JsonParser;
+
+/**
+ * Stores values in a compact binary form of their JSON representation. Each
+ * distinct string, be it a member name or a string value, is only stored once
+ * in a string table and then referred to by index. Integers are stored as
+ * variable length numbers. The payload can optionally be deflated.
+ * <p>
+ * Each entry starts with a header holding a magic number, the format version
+ * and the flags used when the entry was written. Entries without a header are
+ * read as plain JSON, which means that existing stores can switch to this
+ * codec without being erased first.
+ */
+public final class BinaryValueCodec implements ValueCodec {
+
+    private static final byte[] MAGIC = { 'P', 'S', 'B' };
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = MAGIC.length + 2;
+
+    private static final int FLAG_DEFLATE = 0x01;
+
+    private static final int TAG_NULL = 0;
+    private static final int TAG_TRUE = 1;
+    private static final int TAG_FALSE = 2;
+    private static final int TAG_INTEGER = 3;
+    private static final int TAG_DECIMAL = 4;
+    private static final int TAG_STRING = 5;
+    private static final int TAG_ARRAY = 6;
+    private static final int TAG_OBJECT = 7;
+    private static final int TAG_END = 8;
+
+    private static final int END_OF_MEMBERS = 0;
+
+    /**
+     * Writes the JSON produced by Gson straight into the binary form, without
+     * building a JSON tree first, and collects the string table as it goes.
+     * Arrays and objects are terminated by an end tag, as their sizes aren't
+     * known up front.
+     */
+    private static final class Encoder extends JsonWriter {
+        private static final Writer UNWRITABLE_WRITER = new Writer() {
+
+            @Override
+            public void write(char[] buffer, int offset, int count) {
+                throw new AssertionError();
+            }
+
+            @Override
+            public void flush() {
+                throw new AssertionError();
+            }
+
+            @Override
+            public void close() {
+                throw new AssertionError();
+            }
+
+        };
+
+        private final Map<String, Integer> strings = new LinkedHashMap<String, Integer>();
+        private final ByteArrayOutputStream values = new ByteArrayOutputStream();
+
+        /**
+         * The member name waiting for its value. Members with null values are
+         * dropped unless nulls are serialized.
+         */
+        private String pendingName;
+
+        private Encoder() {
+            super(UNWRITABLE_WRITER);
+            this.pendingName = null;
+        }
+
+        @Override
+        public JsonWriter beginArray() {
+            writeTag(TAG_ARRAY);
+            return this;
+        }
+
+        @Override
+        public JsonWriter endArray() {
+            writeTag(TAG_END);
+            return this;
+        }
+
+        @Override
+        public JsonWriter beginObject() {
+            writeTag(TAG_OBJECT);
+            return this;
+        }
+
+        @Override
+        public JsonWriter endObject() {
+            values.write(END_OF_MEMBERS);
+            return this;
+        }
+
+        @Override
+        public JsonWriter name(String name) {
+            if (name == null) {
+                throw new NullPointerException("name == null");
+            }
+
+            pendingName = name;
+            return this;
+        }
+
+        @Override
+        public JsonWriter value(String value) {
+            if (value == null) {
+                return nullValue();
+            }
+
+            writeTag(TAG_STRING);
+            writeVarInt(values, indexOf(value));
+            return this;
+        }
+
+        @Override
+        public JsonWriter nullValue() {
+            if (pendingName != null && !getSerializeNulls()) {
+                pendingName = null;
+            } else {
+                writeTag(TAG_NULL);
+            }
+
+            return this;
+        }
+
+        @Override
+        public JsonWriter value(boolean value) {
+            writeTag(value ? TAG_TRUE : TAG_FALSE);
+            return this;
+        }
+
+        @Override
+        public JsonWriter value(double value) {
+            if (!isLenient() && (Double.isNaN(value) || Double.isInfinite(value))) {
+                throw new IllegalArgumentException("JSON forbids NaN and infinities: " + value);
+            }
+
+            writeNumber(Double.toString(value));
+            return this;
+        }
+
+        @Override
+        public JsonWriter value(long value) {
+            writeNumber(Long.toString(value));
+            return this;
+        }
+
+        @Override
+        public JsonWriter value(Number value) {
+            if (value == null) {
+                return nullValue();
+            }
+
+            if (!isLenient()) {
+                double d = value.doubleValue();
+
+                if (Double.isNaN(d) || Double.isInfinite(d)) {
+                    throw new IllegalArgumentException("JSON forbids NaN and infinities: " + value);
+                }
+            }
+
+            writeNumber(value.toString());
+            return this;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private void writeNumber(String text) {
+            if (isInteger(text)) {
+                long number = Long.parseLong(text);
+                writeTag(TAG_INTEGER);
+                writeVarLong(values, (number << 1) ^ (number >> 63));
+            } else {
+                // Keep the exact textual representation of anything that
+                // isn't a plain integer.
+                writeTag(TAG_DECIMAL);
+                writeVarInt(values, indexOf(text));
+            }
+        }
+
+        /**
+         * Writes the tag of a value, preceded by the name of its member if
+         * it's part of an object. Member names are written as their string
+         * index plus one, which leaves zero to mark the end of the members.
+         */
+        private void writeTag(int tag) {
+            if (pendingName != null) {
+                writeVarInt(values, indexOf(pendingName) + 1);
+                pendingName = null;
+            }
+
+            values.write(tag);
+        }
+
+        private int indexOf(String string) {
+            Integer index = strings.get(string);
+
+            if (index == null) {
+                index = strings.size();
+                strings.put(string, index);
+            }
+
+            return index;
+        }
+
+        private void writeTo(OutputStream outputStream) throws IOException {
+            writeVarInt(outputStream, strings.size());
+
+            for (String string : strings.keySet()) {
+                byte[] bytes = string.getBytes("UTF-8");
+                writeVarInt(outputStream, bytes.length);
+                outputStream.write(bytes);
+            }
+
+            values.writeTo(outputStream);
+        }
+    }
+
+    /**
+     * Reads a JSON tree, resolving strings through the string table. Version 1
+     * entries prefix arrays and objects with their sizes, later versions end
+     * them with an end marker instead.
+     */
+    private static final class Decoder {
+        private final DataInputStream input;
+        private final boolean isCounted;
+        private final String[] strings;
+
+        private Decoder(InputStream inputStream, int version) throws IOException {
+            this.input = new DataInputStream(inputStream);
+            this.isCounted = version < 2;
+            this.strings = new String[readVarInt(input)];
+
+            byte[] buffer = new byte[64];
+
+            for (int i = 0; i < strings.length; i++) {
+                int length = readVarInt(input);
+
+                if (buffer.length < length) {
+                    buffer = new byte[Math.max(length, buffer.length * 2)];
+                }
+
+                input.readFully(buffer, 0, length);
+                strings[i] = new String(buffer, 0, length, "UTF-8");
+            }
+        }
+
+        private JsonElement readElement() throws IOException {
+            return readElement(input.read());
+        }
+
+        private JsonElement readElement(int tag) throws IOException {
+            switch (tag) {
+            case TAG_NULL:
+                return JsonNull.INSTANCE;
+            case TAG_TRUE:
+                return new JsonPrimitive(Boolean.TRUE);
+            case TAG_FALSE:
+                return new JsonPrimitive(Boolean.FALSE);
+            case TAG_INTEGER:
+                long zigZag = readVarLong(input);
+                return new JsonPrimitive(Long.valueOf((zigZag >>> 1) ^ -(zigZag & 1)));
+            case TAG_DECIMAL:
+                return new JsonPrimitive(new BigDecimal(readString(readVarInt(input))));
+            case TAG_STRING:
+                return new JsonPrimitive(readString(readVarInt(input)));
+            case TAG_ARRAY:
+                return readArray();
+            case TAG_OBJECT:
+                return readObject();
+            case -1:
+                throw new EOFException("Unexpected end of stored value");
+            default:
+                throw new IOException("Unknown tag in stored value: " + tag);
+            }
+        }
+
+        private JsonArray readArray() throws IOException {
+            JsonArray array = new JsonArray();
+
+            if (isCounted) {
+                for (int i = readVarInt(input); i > 0; i--) {
+                    array.add(readElement());
+                }
+            } else {
+                for (int tag = input.read(); tag != TAG_END; tag = input.read()) {
+                    array.add(readElement(tag));
+                }
+            }
+
+            return array;
+        }
+
+        private JsonObject readObject() throws IOException {
+            JsonObject object = new JsonObject();
+
+            if (isCounted) {
+                for (int i = readVarInt(input); i > 0; i--) {
+                    String name = readString(readVarInt(input));
+                    object.add(name, readElement());
+                }
+            } else {
+                for (int name = readVarInt(input); name != END_OF_MEMBERS; name = readVarInt(input)) {
+                    object.add(readString(name - 1), readElement());
+                }
+            }
+
+            return object;
+        }
+
+        private String readString(int index) throws IOException {
+            if (index < 0 || index >= strings.length) {
+                throw new IOException("Invalid string reference in stored value: " + index);
+            }
+
+            return strings[index];
+        }
+    }
+
+    private static boolean isInteger(String text) {
+        int length = text.length();
+        int start = length > 0 && text.charAt(0) == '-' ? 1 : 0;
+
+        // Stay well within the range of a long.
+        if (length == start || length - start > 18) {
+            return false;
+        }
+
+        for (int i = start; i < length; i++) {
+            char c = text.charAt(i);
+
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static int readVarInt(InputStream inputStream) throws IOException {
+        long value = readVarLong(inputStream);
+
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IOException("Invalid length in stored value: " + value);
+        }
+
+        return (int) value;
+    }
+
+    private static long readVarLong(InputStream inputStream) throws IOException {
+        long value = 0L;
+
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = inputStream.read();
+
+            if (b == -1) {
+                throw new EOFException("Unexpected end of stored value");
+            }
+
+            value |= (long) (b & 0x7f) << shift;
+
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IOException("Malformed number in stored value");
+    }
+
+    private static void writeVarInt(OutputStream outputStream, int value) {
+        writeVarLong(outputStream, value & 0xffffffffL);
+    }
+
+    private static void writeVarLong(OutputStream outputStream, long value) {
+        try {
+            while ((value & ~0x7fL) != 0L) {
+                outputStream.write((int) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+
+            outputStream.write((int) value);
+        } catch (IOException e) {
+            // Can't happen for the in-memory streams we write to.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private final boolean doCompress;
+    private final JsonValueCodec jsonCodec;
+
+    /**
+     * The total uncompressed and stored sizes of the entries seen so far. The
+     * ratio between them converts stored sizes into decoded size estimates.
+     */
+    private final AtomicLong decodedBytes;
+    private final AtomicLong encodedBytes;
+
+    /**
+     * Creates a codec writing uncompressed entries.
+     */
+    public BinaryValueCodec() {
+        this(false);
+    }
+
+    /**
+     * Creates a codec writing entries, optionally compressed with the deflate
+     * algorithm. Compression trades some CPU time for smaller files. Either
+     * way, both compressed and uncompressed entries can be read.
+     * 
+     * @param doCompress
+     *        Whether to compress the written entries.
+     */
+    public BinaryValueCodec(boolean doCompress) {
+        this.doCompress = doCompress;
+        this.jsonCodec = new JsonValueCodec();
+
+        // Start out from a typical compression ratio, until the actual entries
+        // tell otherwise.
+        this.decodedBytes = new AtomicLong(doCompress ? 4096L : 1024L);
+        this.encodedBytes = new AtomicLong(1024L);
+    }
+
+    @Override
+    public byte[] encode(Object value) throws IOException {
+        Encoder encoder = new Encoder();
+
+        try {
+            JsonParser.toJson(value, encoder);
+        } catch (JsonIOException e) {
+            throw new IOException("Couldn't encode the value", e);
+        }
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        outputStream.write(MAGIC);
+        outputStream.write(VERSION);
+        outputStream.write(doCompress ? FLAG_DEFLATE : 0);
+
+        if (doCompress) {
+            Deflater deflater = new Deflater();
+
+            try {
+                DeflaterOutputStream deflaterOutputStream = new DeflaterOutputStream(outputStream, deflater);
+                encoder.writeTo(deflaterOutputStream);
+                deflaterOutputStream.finish();
+                record(HEADER_SIZE + deflater.getBytesRead(), outputStream.size());
+            } finally {
+                deflater.end();
+            }
+        } else {
+            encoder.writeTo(outputStream);
+            record(outputStream.size(), outputStream.size());
+        }
+
+        return outputStream.toByteArray();
+    }
+
+    @Override
+    public <T> T decode(InputStream inputStream, Class<T> classOfValue) throws IOException {
+        PushbackInputStream pushbackInputStream = new PushbackInputStream(inputStream, HEADER_SIZE);
+        byte[] header = new byte[HEADER_SIZE];
+        int count = 0;
+
+        while (count < HEADER_SIZE) {
+            int read = pushbackInputStream.read(header, count, HEADER_SIZE - count);
+
+            if (read == -1) {
+                break;
+            }
+
+            count += read;
+        }
+
+        if (count < HEADER_SIZE || !hasMagic(header)) {
+            // Written by the plain JSON codec.
+            pushbackInputStream.unread(header, 0, count);
+            return jsonCodec.decode(pushbackInputStream, classOfValue);
+        }
+
+        int version = header[MAGIC.length];
+        int flags = header[MAGIC.length + 1];
+
+        if (version > VERSION) {
+            throw new IOException("Unsupported stored value version: " + version);
+        }
+
+        if ((flags & FLAG_DEFLATE) == 0) {
+            return decode(new BufferedInputStream(pushbackInputStream), version, classOfValue);
+        }
+
+        Inflater inflater = new Inflater();
+
+        try {
+            InputStream body = new InflaterInputStream(pushbackInputStream, inflater);
+            T value = decode(new BufferedInputStream(body), version, classOfValue);
+            record(HEADER_SIZE + inflater.getBytesWritten(), HEADER_SIZE + inflater.getBytesRead());
+            return value;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Estimates the decoded size from the ratio between the uncompressed and
+     * the stored sizes of the entries encoded and decoded so far.
+     * 
+     * @see com.podio.sdk.localstore.ValueCodec#estimateDecodedSize(long)
+     */
+    @Override
+    public long estimateDecodedSize(long encodedSize) {
+        return (long) (encodedSize * ((double) decodedBytes.get() / encodedBytes.get()));
+    }
+
+    private <T> T decode(InputStream body, int version, Class<T> classOfValue) throws IOException {
+        try {
+            Decoder decoder = new Decoder(body, version);
+            return JsonParser.fromJson(decoder.readElement(), classOfValue);
+        } catch (JsonParseException e) {
+            throw new IOException("Couldn't map the stored value", e);
+        }
+    }
+
+    private void record(long decodedSize, long encodedSize) {
+        decodedBytes.addAndGet(decodedSize);
+        encodedBytes.addAndGet(encodedSize);
+    }
+
+    private boolean hasMagic(byte[] header) {
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (header[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+}
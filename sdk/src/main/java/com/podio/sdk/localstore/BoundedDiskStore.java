@@ -0,0 +1,254 @@
+/*
+ *  Copyright (C) 2014 Copyright Citrix Systems, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ *  this software and associated documentation files (the "Software"), to deal in 
+ *  the Software without restriction, including without limitation the rights to 
+ *  use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+ *  of the Software, and to permit persons to whom the Software is furnished to 
+ *  do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all 
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *  SOFTWARE.
+ */
+package com.podio.sdk.localstore;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link DiskStore} keeping the total size of another disk store within a
+ * quota, and optionally expiring values a given time after they were written.
+ * The size and time of writing of each value are tracked in memory as values
+ * are written and removed. The actual disk store is only listed once, when
+ * the store is opened.
+ * <p>
+ * When the quota is exceeded, values are evicted either in least recently
+ * used order or in the order they were written. Expired values are removed as
+ * they are found, i.e. when read or when the store is opened.
+ */
+final class BoundedDiskStore implements DiskStore {
+
+    /**
+     * The tracked state of a value.
+     */
+    private static final class Record {
+        private final long size;
+        private final long writtenAt;
+
+        private Record(long size, long writtenAt) {
+            this.size = size;
+            this.writtenAt = writtenAt;
+        }
+    }
+
+    /**
+     * Wraps the given disk store, picking up the values already in it.
+     * 
+     * @param diskStore
+     *        The disk store to bound.
+     * @param maxSize
+     *        The max total size, in bytes, of the values. Zero (or less)
+     *        means no limit.
+     * @param timeToLiveMillis
+     *        The time after which a value expires. Zero (or less) means
+     *        never.
+     * @param doEvictByAge
+     *        Whether to evict the oldest values, rather than the least
+     *        recently used ones, when the quota is exceeded.
+     * @return The bounded disk store.
+     * @throws IOException
+     *         If the disk store couldn't be listed or trimmed.
+     */
+    static BoundedDiskStore open(DiskStore diskStore, long maxSize, long timeToLiveMillis, boolean doEvictByAge) throws IOException {
+        BoundedDiskStore boundedDiskStore = new BoundedDiskStore(diskStore, maxSize, timeToLiveMillis, doEvictByAge);
+        boundedDiskStore.load();
+        return boundedDiskStore;
+    }
+
+    private final DiskStore diskStore;
+    private final long maxSize;
+    private final long timeToLiveMillis;
+
+    /**
+     * The tracked values, in eviction order (eldest first).
+     */
+    private final LinkedHashMap<String, Record> records;
+
+    private long size;
+
+    private BoundedDiskStore(DiskStore diskStore, long maxSize, long timeToLiveMillis, boolean doEvictByAge) {
+        this.diskStore = diskStore;
+        this.maxSize = maxSize;
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.records = new LinkedHashMap<String, Record>(16, 0.75f, !doEvictByAge);
+        this.size = 0L;
+    }
+
+    @Override
+    public synchronized List<Entry> entries() {
+        ArrayList<Entry> entries = new ArrayList<Entry>(records.size());
+
+        for (Map.Entry<String, Record> entry : records.entrySet()) {
+            Record record = entry.getValue();
+            entries.add(new Entry(entry.getKey(), record.size, record.writtenAt));
+        }
+
+        return entries;
+    }
+
+    @Override
+    public synchronized void erase() {
+        diskStore.erase();
+        records.clear();
+        size = 0L;
+    }
+
+    @Override
+    public <E> E read(Object key, Class<E> classOfValue, ValueCodec valueCodec) throws IOException {
+        String name = key.toString();
+
+        synchronized (this) {
+            // This also marks the value as recently used.
+            Record record = records.get(name);
+
+            if (record == null) {
+                return null;
+            }
+
+            if (isExpired(record, System.currentTimeMillis())) {
+                delete(name);
+                return null;
+            }
+        }
+
+        return diskStore.read(key, classOfValue, valueCodec);
+    }
+
+    @Override
+    public synchronized void remove(Object key) throws IOException {
+        delete(key.toString());
+    }
+
+    @Override
+    public long sizeOf(Object key) {
+        return diskStore.sizeOf(key);
+    }
+
+    @Override
+    public void sync() throws IOException {
+        diskStore.sync();
+    }
+
+    @Override
+    public synchronized void write(Object key, byte[] bytes) throws IOException {
+        // Writes and evictions are serialized, or an eviction could remove a
+        // value that is being written on another thread.
+        String name = key.toString();
+        diskStore.write(key, bytes);
+
+        // Re-inserting moves the value last in eviction order, regardless
+        // of whether the order is by use or by age.
+        Record previous = records.remove(name);
+
+        if (previous != null) {
+            size -= previous.size;
+        }
+
+        records.put(name, new Record(bytes.length, System.currentTimeMillis()));
+        size += bytes.length;
+
+        trim();
+    }
+
+    @Override
+    public synchronized long writtenAt(Object key) {
+        Record record = records.get(key.toString());
+        return record != null ? record.writtenAt : 0L;
+    }
+
+    /**
+     * Removes a value from the disk store and stops tracking it. Must be
+     * called with the lock held.
+     */
+    private void delete(String name) throws IOException {
+        diskStore.remove(name);
+        Record record = records.remove(name);
+
+        if (record != null) {
+            size -= record.size;
+        }
+    }
+
+    private boolean isExpired(Record record, long now) {
+        return timeToLiveMillis > 0L && now - record.writtenAt >= timeToLiveMillis;
+    }
+
+    /**
+     * Picks up the values already in the disk store, dropping the expired
+     * ones, and makes sure they fit the quota.
+     */
+    private synchronized void load() throws IOException {
+        List<Entry> entries = diskStore.entries();
+        long now = System.currentTimeMillis();
+
+        // Without any usage history, the time of writing is the best guess
+        // for both eviction orders.
+        Collections.sort(entries, new Comparator<Entry>() {
+
+            @Override
+            public int compare(Entry lhs, Entry rhs) {
+                return lhs.writtenAt < rhs.writtenAt ? -1 : (lhs.writtenAt == rhs.writtenAt ? 0 : 1);
+            }
+
+        });
+
+        for (Entry entry : entries) {
+            Record record = new Record(entry.size, entry.writtenAt);
+
+            if (isExpired(record, now)) {
+                diskStore.remove(entry.key);
+            } else {
+                records.put(entry.key, record);
+                size += record.size;
+            }
+        }
+
+        trim();
+    }
+
+    /**
+     * Evicts values, eldest first, until the quota is met. A value that was
+     * just written is last in line, and will only be evicted if it alone
+     * exceeds the quota. Must be called with the lock held.
+     */
+    private void trim() throws IOException {
+        if (maxSize <= 0L) {
+            return;
+        }
+
+        Iterator<Map.Entry<String, Record>> iterator = records.entrySet().iterator();
+
+        while (size > maxSize && iterator.hasNext()) {
+            Map.Entry<String, Record> entry = iterator.next();
+            diskStore.remove(entry.getKey());
+            size -= entry.getValue().size;
+            iterator.remove();
+        }
+    }
+
+}
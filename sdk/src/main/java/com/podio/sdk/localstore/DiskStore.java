@@ -0,0 +1,131 @@
+/*
+ *  Copyright (C) 2014 Copyright Citrix Systems, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ *  this software and associated documentation files (the "Software"), to deal in 
+ *  the Software without restriction, including without limitation the rights to 
+ *  use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+ *  of the Software, and to permit persons to whom the Software is furnished to 
+ *  do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all 
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *  SOFTWARE.
+ */
+package com.podio.sdk.localstore;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The persistent tier of a {@link LocalStore}. Values are handed to, and read
+ * from, a disk store in their encoded form, see {@link ValueCodec}. Keys are
+ * identified by their string representation. Implementations must be thread
+ * safe, as a store may be accessed from several worker threads at once.
+ */
+interface DiskStore {
+
+    /**
+     * Describes a value in the disk store.
+     */
+    static final class Entry {
+        final String key;
+        final long size;
+        final long writtenAt;
+
+        Entry(String key, long size, long writtenAt) {
+            this.key = key;
+            this.size = size;
+            this.writtenAt = writtenAt;
+        }
+    }
+
+    /**
+     * Lists all values in the disk store. This is potentially expensive, and
+     * only meant to be called once when the store is opened.
+     * 
+     * @return The key, size and time of writing of each value.
+     * @throws IOException
+     *         If the disk store couldn't be listed.
+     */
+    public List<Entry> entries() throws IOException;
+
+    /**
+     * Deletes all values, and any files backing them, from the disk store.
+     * The disk store can't be used after this.
+     */
+    public void erase();
+
+    /**
+     * Reads and decodes the value stored for the given key.
+     * 
+     * @param key
+     *        The key of the value.
+     * @param classOfValue
+     *        The type to decode the value into.
+     * @param valueCodec
+     *        The codec the value was written with.
+     * @return The value, or null if there is no value for the key.
+     * @throws IOException
+     *         If the value couldn't be read or decoded.
+     */
+    public <E> E read(Object key, Class<E> classOfValue, ValueCodec valueCodec) throws IOException;
+
+    /**
+     * Removes the value stored for the given key, if any.
+     * 
+     * @param key
+     *        The key of the value.
+     * @throws IOException
+     *         If the value couldn't be removed.
+     */
+    public void remove(Object key) throws IOException;
+
+    /**
+     * Returns the size of the value stored for the given key.
+     * 
+     * @param key
+     *        The key of the value.
+     * @return The size of the encoded value in bytes, or zero if there is no
+     *         value for the key.
+     */
+    public long sizeOf(Object key);
+
+    /**
+     * Makes sure all values written so far have reached the storage device.
+     * 
+     * @throws IOException
+     *         If the values couldn't be synced.
+     */
+    public void sync() throws IOException;
+
+    /**
+     * Stores an encoded value for the given key, replacing any previous value.
+     * 
+     * @param key
+     *        The key of the value.
+     * @param bytes
+     *        The encoded value.
+     * @throws IOException
+     *         If the value couldn't be written.
+     */
+    public void write(Object key, byte[] bytes) throws IOException;
+
+    /**
+     * Returns the time the value for the given key was written.
+     * 
+     * @param key
+     *        The key of the value.
+     * @return The time of writing, in milliseconds since the epoch, or zero
+     *         if there is no value for the key.
+     */
+    public long writtenAt(Object key);
+
+}
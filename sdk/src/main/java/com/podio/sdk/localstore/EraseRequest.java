@@ -21,11 +21,8 @@
  */
 package com.podio.sdk.localstore;
 
-import java.io.File;
 import java.util.concurrent.Callable;
 
-import android.util.LruCache;
-
 /**
  * A specific {@link LocalStoreRequest}, targeting the "destroy store"
  * operation. This implementation clears the memory cache and wipes all files
@@ -44,37 +41,12 @@ final class EraseRequest extends LocalStoreRequest<Void> {
      * @param memoryStore
      *        The in-memory cache to clear.
      */
-    private static final void destroyMemoryStore(LruCache<Object, Object> memoryStore) {
+    private static final void destroyMemoryStore(MemoryStore memoryStore) {
         if (memoryStore != null) {
             memoryStore.evictAll();
         }
     }
 
-    /**
-     * Removes all files in the given directory and tries to remove the
-     * directory as well.
-     * 
-     * @param diskStore
-     *        The disk cache to clear.
-     */
-    private static final void destroyDiskStore(File diskStore) {
-        if (isWritableDirectory(diskStore)) {
-            File[] files = diskStore.listFiles();
-
-            if (files != null) {
-                for (File file : files) {
-                    if (file.isDirectory()) {
-                        destroyDiskStore(file);
-                    } else if (file.isFile()) {
-                        file.delete();
-                    }
-                }
-            }
-
-            diskStore.delete();
-        }
-    }
-
     /**
      * Creates a new Request for destroying the local store. The request will
      * not deliver anything.
@@ -82,16 +54,20 @@ final class EraseRequest extends LocalStoreRequest<Void> {
      * @param memoryStore
      *        The in-memory store.
      * @param diskStore
-     *        The file handle to the disk store directory.
+     *        The disk store.
      */
-    EraseRequest(final LruCache<Object, Object> memoryStore, final File diskStore) {
+    EraseRequest(final MemoryStore memoryStore, final DiskStore diskStore) {
         super(new Callable<Void>() {
 
             @Override
             public Void call() throws Exception {
                 validateState(memoryStore, diskStore);
                 destroyMemoryStore(memoryStore);
-                destroyDiskStore(diskStore);
+
+                if (diskStore != null) {
+                    diskStore.erase();
+                }
+
                 return null;
             }
 
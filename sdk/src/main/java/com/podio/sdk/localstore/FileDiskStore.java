@@ -0,0 +1,200 @@
+/*
+ *  Copyright (C) 2014 Copyright Citrix Systems, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ *  this software and associated documentation files (the "Software"), to deal in 
+ *  the Software without restriction, including without limitation the rights to 
+ *  use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+ *  of the Software, and to permit persons to whom the Software is furnished to 
+ *  do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all 
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *  SOFTWARE.
+ */
+package com.podio.sdk.localstore;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link DiskStore} keeping each value in a file of its own. The files are
+ * named after the URL encoded string representation of the keys. Values are
+ * first written to a temporary file which then replaces the actual file, so
+ * a value is never left half written.
+ */
+final class FileDiskStore implements DiskStore {
+
+    /**
+     * Removes all files in the given directory and tries to remove the
+     * directory as well.
+     * 
+     * @param directory
+     *        The directory to delete.
+     */
+    private static void deleteDirectory(File directory) {
+        if (LocalStoreRequest.isWritableDirectory(directory)) {
+            File[] files = directory.listFiles();
+
+            if (files != null) {
+                for (File file : files) {
+                    if (file.isDirectory()) {
+                        deleteDirectory(file);
+                    } else if (file.isFile()) {
+                        file.delete();
+                    }
+                }
+            }
+
+            directory.delete();
+        }
+    }
+
+    private final File directory;
+    private final boolean doSync;
+
+    /**
+     * @param directory
+     *        The directory to keep the files in.
+     * @param doSync
+     *        Whether to force each written file to the storage device before
+     *        it replaces the previous one.
+     */
+    FileDiskStore(File directory, boolean doSync) {
+        this.directory = directory;
+        this.doSync = doSync;
+    }
+
+    @Override
+    public List<Entry> entries() throws IOException {
+        ArrayList<Entry> entries = new ArrayList<Entry>();
+        File[] files = LocalStoreRequest.isReadableDirectory(directory) ? directory.listFiles() : null;
+
+        if (files != null) {
+            String charsetName = Charset.defaultCharset().name();
+
+            for (File file : files) {
+                String name = file.getName();
+
+                // Skip temporary files.
+                if (file.isFile() && !name.startsWith("~")) {
+                    String key = URLDecoder.decode(name, charsetName);
+                    entries.add(new Entry(key, file.length(), file.lastModified()));
+                }
+            }
+        }
+
+        return entries;
+    }
+
+    @Override
+    public void erase() {
+        deleteDirectory(directory);
+    }
+
+    @Override
+    public <E> E read(Object key, Class<E> classOfValue, ValueCodec valueCodec) throws IOException {
+        if (!LocalStoreRequest.isReadableDirectory(directory) || !LocalStoreRequest.isValidTemplate(classOfValue)) {
+            return null;
+        }
+
+        File file = getFile(key);
+
+        if (!LocalStoreRequest.isReadableFile(file)) {
+            return null;
+        }
+
+        FileInputStream fileInputStream = new FileInputStream(file);
+
+        try {
+            FileChannel channel = fileInputStream.getChannel();
+            long size = channel.size();
+
+            // Decode straight from the file, mapping large files into memory
+            // rather than copying them through a buffer.
+            InputStream inputStream = size >= MappedInputStream.MIN_MAPPED_SIZE ?
+                    MappedInputStream.map(channel, 0L, size) :
+                    new BufferedInputStream(fileInputStream);
+
+            return valueCodec.decode(inputStream, classOfValue);
+        } finally {
+            fileInputStream.close();
+        }
+    }
+
+    @Override
+    public void remove(Object key) throws IOException {
+        if (LocalStoreRequest.isReadableDirectory(directory)) {
+            getFile(key).delete();
+        }
+    }
+
+    @Override
+    public long sizeOf(Object key) {
+        try {
+            return getFile(key).length();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    @Override
+    public void sync() throws IOException {
+        // Each file is synced as it's written, if at all.
+    }
+
+    @Override
+    public void write(Object key, byte[] bytes) throws IOException {
+        File file = getFile(key);
+
+        // URL encoded file names never contain a tilde, so the temporary
+        // file can't collide with the file of any other key.
+        File temporaryFile = new File(directory, "~" + file.getName() + ".tmp");
+        FileOutputStream fileOutputStream = new FileOutputStream(temporaryFile);
+
+        try {
+            fileOutputStream.write(bytes);
+
+            if (doSync) {
+                fileOutputStream.getFD().sync();
+            }
+        } finally {
+            fileOutputStream.close();
+        }
+
+        if (!temporaryFile.renameTo(file)) {
+            temporaryFile.delete();
+            throw new IOException("Couldn't replace the stored value");
+        }
+    }
+
+    @Override
+    public long writtenAt(Object key) {
+        try {
+            return getFile(key).lastModified();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    private File getFile(Object key) throws IOException {
+        return new File(directory, LocalStoreRequest.getFileName(key));
+    }
+
+}
@@ -23,8 +23,6 @@ package com.podio.sdk.localstore;
 
 import java.util.concurrent.Callable;
 
-import android.util.LruCache;
-
 /**
  * A specific {@link LocalStoreRequest}, targeting the "close store" operation.
  * This implementation simply clears the memory cache while leaving the
@@ -40,7 +38,7 @@ final class FreeRequest extends LocalStoreRequest<Void> {
      * 
      * @param memoryStore
      */
-    FreeRequest(final LruCache<Object, Object> memoryStore) {
+    FreeRequest(final MemoryStore memoryStore) {
         super(new Callable<Void>() {
 
             @Override
@@ -0,0 +1,75 @@
+/*
+ *  Copyright (C) 2014 Copyright Citrix Systems, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ *  this software and associated documentation files (the "Software"), to deal in 
+ *  the Software without restriction, including without limitation the rights to 
+ *  use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+ *  of the Software, and to permit persons to whom the Software is furnished to 
+ *  do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all 
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *  SOFTWARE.
+ */
+package com.podio.sdk.localstore;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * A specific {@link LocalStoreRequest}, targeting the "get several values"
+ * operation. This implementation looks up all values in one go, as described
+ * by {@link GetRequest}, and delivers them all at once.
+ */
+final class GetAllRequest<T> extends LocalStoreRequest<Map<Object, T>> {
+
+    /**
+     * Creates a new Request for retrieving several values from the local
+     * store. The request will deliver the found values by key.
+     * 
+     * @param memoryStore
+     *        The in-memory store.
+     * @param diskStore
+     *        The disk store.
+     * @param keys
+     *        The keys of the values.
+     * @param classOfValue
+     *        The type to parse the values into (if needed).
+     * @param valueCodec
+     *        The codec the disk store is written with.
+     */
+    GetAllRequest(final MemoryStore memoryStore, final DiskStore diskStore, final Collection<?> keys,
+            final Class<T> classOfValue, final ValueCodec valueCodec) {
+
+        super(new Callable<Map<Object, T>>() {
+
+            @Override
+            public Map<Object, T> call() throws Exception {
+                validateState(memoryStore, diskStore);
+                LinkedHashMap<Object, T> values = new LinkedHashMap<Object, T>();
+
+                for (Object key : keys) {
+                    T value = GetRequest.getValue(memoryStore, diskStore, key, classOfValue, valueCodec);
+
+                    if (value != null) {
+                        values.put(key, value);
+                    }
+                }
+
+                return values;
+            }
+
+        });
+    }
+
+}
@@ -21,12 +21,9 @@
  */
 package com.podio.sdk.localstore;
 
-import java.io.File;
 import java.io.IOException;
 import java.util.concurrent.Callable;
 
-import android.util.LruCache;
-
 /**
  * A specific {@link LocalStoreRequest}, targeting the "get value" operation.
  * This implementation tries to fetch a value from the memory cache first and if
@@ -53,6 +50,8 @@ final class GetRequest<T> extends LocalStoreRequest<T> {
      *        The key for the value to fetch.
      * @param classOfValue
      *        The {@link Class} template to parse the disk store JSON to.
+     * @param valueCodec
+     *        The codec the disk store is written with.
      * @return The value associated with the key or null if none found.
      * @throws IOException
      *         If reading from disk store failed for some reason.
@@ -60,25 +59,27 @@ final class GetRequest<T> extends LocalStoreRequest<T> {
      *         If the value can't be cast to the requested template type.
      */
     @SuppressWarnings("unchecked")
-    private static final <E> E getValue(LruCache<Object, Object> memoryStore, File diskStore, Object key,
-            Class<E> classOfValue) throws IOException, ClassCastException {
+    static final <E> E getValue(MemoryStore memoryStore, DiskStore diskStore, Object key,
+            Class<E> classOfValue, ValueCodec valueCodec) throws IOException, ClassCastException {
 
         E value = null;
 
         // Try to read from memory.
         if (memoryStore != null) {
-            value = (E) memoryStore.get(key);
+            value = (E) memoryStore.getIfFresh(key);
         }
 
         // If failed try to read from disk.
-        if (value == null && isReadableDirectory(diskStore) && isValidTemplate(classOfValue)) {
-            String fileName = getFileName(key);
-            File file = new File(diskStore, fileName);
-            value = readObjectFromDisk(file, classOfValue);
+        if (value == null && diskStore != null && isValidTemplate(classOfValue)) {
+            value = diskStore.read(key, classOfValue, valueCodec);
 
-            // Update memory.
-            if (value != null) {
-                memoryStore.put(key, value);
+            // Update memory. The memory footprint of the value is estimated
+            // the same way as when it was written, and the value keeps its
+            // time of writing so that it expires from memory when it would
+            // have expired from disk.
+            if (value != null && memoryStore != null) {
+                long sizeInBytes = valueCodec.estimateDecodedSize(diskStore.sizeOf(key));
+                memoryStore.put(key, value, sizeInBytes, diskStore.writtenAt(key));
             }
         }
 
@@ -94,21 +95,23 @@ final class GetRequest<T> extends LocalStoreRequest<T> {
      * @param memoryStore
      *        The in-memory store.
      * @param diskStore
-     *        The file handle to the disk store directory.
+     *        The disk store.
      * @param key
      *        The key of the value.
      * @param classOfValue
      *        The type to parse the file into (if needed).
+     * @param valueCodec
+     *        The codec the disk store is written with.
      */
-    GetRequest(final LruCache<Object, Object> memoryStore, final File diskStore, final Object key,
-            final Class<T> classOfValue) {
+    GetRequest(final MemoryStore memoryStore, final DiskStore diskStore, final Object key,
+            final Class<T> classOfValue, final ValueCodec valueCodec) {
 
         super(new Callable<T>() {
 
             @Override
             public T call() throws Exception {
                 validateState(memoryStore, diskStore);
-                return getValue(memoryStore, diskStore, key, classOfValue);
+                return getValue(memoryStore, diskStore, key, classOfValue, valueCodec);
             }
 
         });
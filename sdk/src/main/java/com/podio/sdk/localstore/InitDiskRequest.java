@@ -33,12 +33,14 @@ import com.podio.sdk.internal.Utils;
  * A specific {@link LocalStoreRequest}, targeting the "initialize disk store"
  * operation. This implementation gets a handle to the internal cache directory
  * and looks for a sub directory therein with the given store name. If no such
- * sub directory is found, one is created.
+ * sub directory is found, one is created. The values are kept either in one
+ * file each, or all together in a segment file in the directory, optionally
+ * within a quota and behind a write buffer.
  * 
  * @see com.podio.sdk.localstore.EraseRequest
  * @author László Urszuly
  */
-final class InitDiskRequest extends LocalStoreRequest<File> {
+final class InitDiskRequest extends LocalStoreRequest<DiskStore> {
 
     /**
      * Returns the handle to the internal cache directory on this device.
@@ -77,13 +79,38 @@ final class InitDiskRequest extends LocalStoreRequest<File> {
      *        The context from which the cache directory path will be extracted.
      * @param name
      *        The name of the store to initialize.
+     * @param options
+     *        The set up of the disk store.
      */
-    InitDiskRequest(final Context context, final String name) {
-        super(new Callable<File>() {
+    InitDiskRequest(final Context context, final String name, final LocalStore.Options options) {
+        super(new Callable<DiskStore>() {
 
             @Override
-            public File call() throws Exception {
-                return getDiskStoreDirectory(context, name);
+            public DiskStore call() throws Exception {
+                File directory = getDiskStoreDirectory(context, name);
+
+                if (directory == null) {
+                    return null;
+                }
+
+                // In write-behind mode the batches are synced as a whole,
+                // rather than each segment file write on its own.
+                boolean isWriteBehind = options.flushDelayMillis > 0L;
+
+                // Opening a segment file means rebuilding its index, which
+                // is why it's done here, on the worker thread.
+                DiskStore diskStore = options.useSegmentFile ?
+                        SegmentDiskStore.open(directory, options.doSync && !isWriteBehind) :
+                        new FileDiskStore(directory, options.doSync);
+
+                if (options.maxDiskSize > 0L || options.timeToLiveMillis > 0L) {
+                    diskStore = BoundedDiskStore.open(diskStore, options.maxDiskSize,
+                            options.timeToLiveMillis, options.doEvictByAge);
+                }
+
+                return isWriteBehind ?
+                        new WriteBehindDiskStore(diskStore, options.flushDelayMillis, options.maxPendingSize, options.doSync) :
+                        diskStore;
             }
 
         });
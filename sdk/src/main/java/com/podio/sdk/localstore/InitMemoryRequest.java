@@ -21,9 +21,6 @@
  */
 package com.podio.sdk.localstore;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.util.concurrent.Callable;
 
 import android.util.LruCache;
@@ -31,49 +28,13 @@ import android.util.LruCache;
 /**
  * A specific {@link LocalStoreRequest}, targeting the "initialize memory cache"
  * operation. This implementation instantiates a {@link LruCache} which
- * calculates the size in kilobytes rather than number of contained items.
+ * calculates the size in kilobytes rather than number of contained items. The
+ * size of each value is recorded as it's added to the cache, see
+ * {@link MemoryStore}.
  * 
  * @author László Urszuly
  */
-final class InitMemoryRequest extends LocalStoreRequest<LruCache<Object, Object>> {
-
-    /**
-     * Makes a rough estimate of the size of the object in KB's. There doesn't
-     * seem to be any mechanism in the Android platform to get this figure
-     * easily and reliably. Java 7 has a 'java.lang.instrument' class that could
-     * have helped, but those features aren't valid on Android (as Android
-     * doesn't run in a Java VM, but rather in a Dalvik VM).
-     * 
-     * @param object
-     *        The object to calculate the size of.
-     * @return The size in kilobytes of the object serialized into a byte array,
-     *         or zero if the object is null or couldn't be serialized into a
-     *         byte array.
-     */
-    private static int calculateSizeOfByteStream(Object object) {
-        if (object == null) {
-            return 0;
-        }
-
-        try {
-            // TODO: Does this take referenced objects into consideration? Most
-            // likely not. Would it make sense to cache the JSON representation
-            // of the value instead? Which one has the smallest memory
-            // footprint?
-            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-            ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
-
-            objectOutputStream.writeObject(object);
-            objectOutputStream.flush();
-            objectOutputStream.close();
-
-            byte[] byteArray = byteArrayOutputStream.toByteArray();
-            return (int) (byteArray.length / 1024);
-        } catch (IOException e) {
-            // We don't know anything about the size.
-            return Integer.MAX_VALUE;
-        }
-    }
+final class InitMemoryRequest extends LocalStoreRequest<MemoryStore> {
 
     /**
      * Creates a new local store request that initializes the memory cache on a
@@ -82,20 +43,16 @@ final class InitMemoryRequest extends LocalStoreRequest<LruCache<Object, Object>
      * @param maxMemoryAsKiloBytes
      *        The maximum amount of memory, in KB, the memory store will ever
      *        request from the system.
+     * @param timeToLiveMillis
+     *        The time after which a value expires. Zero (or less) means
+     *        never.
      */
-    InitMemoryRequest(final int maxMemoryAsKiloBytes) {
-        super(new Callable<LruCache<Object, Object>>() {
+    InitMemoryRequest(final int maxMemoryAsKiloBytes, final long timeToLiveMillis) {
+        super(new Callable<MemoryStore>() {
 
             @Override
-            public LruCache<Object, Object> call() throws Exception {
-                return new LruCache<Object, Object>(maxMemoryAsKiloBytes) {
-
-                    @Override
-                    protected int sizeOf(Object key, Object value) {
-                        return calculateSizeOfByteStream(value);
-                    }
-
-                };
+            public MemoryStore call() throws Exception {
+                return new MemoryStore(maxMemoryAsKiloBytes, timeToLiveMillis);
             }
 
         });
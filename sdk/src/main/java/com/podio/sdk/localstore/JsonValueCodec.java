@@ -0,0 +1,61 @@
+/*
+ *  Copyright (C) 2014 Copyright Citrix Systems, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ *  this software and associated documentation files (the "Software"), to deal in 
+ *  the Software without restriction, including without limitation the rights to 
+ *  use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+ *  of the Software, and to permit persons to whom the Software is furnished to 
+ *  do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all 
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *  SOFTWARE.
+ */
+package com.podio.sdk.localstore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+import com.google.gson.JsonParseException;
+import com.podio.sdk.JsonParser;
+
+/**
+ * Stores values as plain UTF-8 encoded JSON. This is the default disk format
+ * of the {@link LocalStore}.
+ */
+public final class JsonValueCodec implements ValueCodec {
+
+    @Override
+    public byte[] encode(Object value) throws IOException {
+        return JsonParser.toJson(value).getBytes("UTF-8");
+    }
+
+    @Override
+    public <T> T decode(InputStream inputStream, Class<T> classOfValue) throws IOException {
+        try {
+            return JsonParser.fromJson(new InputStreamReader(inputStream, "UTF-8"), classOfValue);
+        } catch (JsonParseException e) {
+            throw new IOException("Couldn't parse the stored JSON", e);
+        }
+    }
+
+    /**
+     * Estimates the decoded size by the length of the JSON text.
+     * 
+     * @see com.podio.sdk.localstore.ValueCodec#estimateDecodedSize(long)
+     */
+    @Override
+    public long estimateDecodedSize(long encodedSize) {
+        return encodedSize;
+    }
+
+}
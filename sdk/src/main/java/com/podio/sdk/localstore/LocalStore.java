@@ -18,6 +18,10 @@
 package com.podio.sdk.localstore;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.Callable;
 
 import android.content.Context;
@@ -32,7 +36,9 @@ import com.podio.sdk.Store;
  * A {@link Store} implementation modeling a memory-cache backed by persistent
  * disk storage. The memory cache heavily relies on the Android {@link LruCache}
  * while the disk store is a basic directory in the internal cache directory of
- * the app. The actual contents are saved as JSON files in sub-directories.
+ * the app. The actual contents are saved as JSON files in sub-directories, or
+ * in any other format given by a {@link ValueCodec}. Optionally all values of
+ * a store are kept in one single segment file instead, see {@link Options}.
  * <p>
  * The {@link Store} interface enables means of adding, removing, and fetching
  * content to and from the store. Further more the caller can choose to close
@@ -52,6 +58,144 @@ import com.podio.sdk.Store;
  */
 public class LocalStore extends QueueClient implements Store {
 
+    /**
+     * Describes how a {@link LocalStore} is to be set up. The default options
+     * give a store serializing all operations on one thread, keeping each
+     * value as a JSON file of its own.
+     */
+    public static final class Options {
+        int diskThreadCount = 0;
+        ValueCodec valueCodec = new JsonValueCodec();
+        boolean useSegmentFile = false;
+        boolean doSync = false;
+        long flushDelayMillis = 0L;
+        long maxPendingSize = 0L;
+        long maxDiskSize = 0L;
+        boolean doEvictByAge = false;
+        long timeToLiveMillis = 0L;
+
+        /**
+         * Limits the total size of the values on disk. Once the limit is
+         * exceeded, values are evicted until it's met again. The size is
+         * tracked as values are written and removed, so a large store won't
+         * get any slower.
+         * 
+         * @param maxDiskKiloBytes
+         *        The max size of the disk store. Zero (or less) means no limit
+         *        (default).
+         * @param doEvictByAge
+         *        Boolean true to evict the values written first, false to
+         *        evict the least recently used values first.
+         * @return This options object, to enable convenient chaining.
+         */
+        public Options withDiskQuota(int maxDiskKiloBytes, boolean doEvictByAge) {
+            this.maxDiskSize = maxDiskKiloBytes * 1024L;
+            this.doEvictByAge = doEvictByAge;
+            return this;
+        }
+
+        /**
+         * Sets the number of disk worker threads. A store with at least one
+         * disk worker spreads the operations over the workers by key, so that
+         * a slow disk read doesn't hold up operations on other keys.
+         * Operations on the same key are still performed in the order they
+         * were requested. Use {@link LocalStore#peek(Object, Class)} to read
+         * the memory cache without involving any workers.
+         * 
+         * @param diskThreadCount
+         *        The number of disk worker threads. Zero (or less) will open
+         *        a store which serializes all operations on one single thread.
+         * @return This options object, to enable convenient chaining.
+         */
+        public Options withDiskThreadCount(int diskThreadCount) {
+            this.diskThreadCount = diskThreadCount;
+            return this;
+        }
+
+        /**
+         * Sets whether to keep all values of the store in one single segment
+         * file, rather than one file per value. This is considerably cheaper
+         * for stores with a large number of small values. Note that the two
+         * layouts can't read each other's values.
+         * 
+         * @param useSegmentFile
+         *        Boolean true to use a segment file, false otherwise.
+         * @return This options object, to enable convenient chaining.
+         */
+        public Options withSegmentFile(boolean useSegmentFile) {
+            this.useSegmentFile = useSegmentFile;
+            return this;
+        }
+
+        /**
+         * Sets whether written values are forced to the storage device before
+         * a write is considered done. This survives power loss, rather than
+         * only the app being killed, but makes writes a lot slower. In
+         * write-behind mode, each batch is synced as a whole.
+         * 
+         * @param doSync
+         *        Boolean true to sync the writes, false otherwise (default).
+         * @return This options object, to enable convenient chaining.
+         */
+        public Options withSyncedWrites(boolean doSync) {
+            this.doSync = doSync;
+            return this;
+        }
+
+        /**
+         * Lets the values expire a given time after they were written.
+         * Expired values are never delivered, and are removed from memory and
+         * disk as they're found.
+         * 
+         * @param timeToLiveMillis
+         *        The time to live of each value. Zero (or less) means forever
+         *        (default).
+         * @return This options object, to enable convenient chaining.
+         */
+        public Options withTimeToLive(long timeToLiveMillis) {
+            this.timeToLiveMillis = timeToLiveMillis;
+            return this;
+        }
+
+        /**
+         * Sets the disk format of the values.
+         * 
+         * @param valueCodec
+         *        The codec, e.g. a {@link BinaryValueCodec}. Note that a
+         *        store has to be erased if switching to a codec which can't
+         *        read the previous format.
+         * @return This options object, to enable convenient chaining.
+         */
+        public Options withValueCodec(ValueCodec valueCodec) {
+            if (valueCodec == null) {
+                throw new IllegalArgumentException("The value codec mustn't be null");
+            }
+
+            this.valueCodec = valueCodec;
+            return this;
+        }
+
+        /**
+         * Enables write-behind mode, where values are written to disk in
+         * batches rather than one by one. Repeatedly setting the same key only
+         * causes one disk write per batch. Values not yet written are lost if
+         * the app is killed.
+         * 
+         * @param flushDelayMillis
+         *        The max time a value is kept waiting to be written. Zero (or
+         *        less) disables write-behind mode (default).
+         * @param maxPendingKiloBytes
+         *        The amount of waiting values which causes a batch to be
+         *        written right away.
+         * @return This options object, to enable convenient chaining.
+         */
+        public Options withWriteBehind(long flushDelayMillis, int maxPendingKiloBytes) {
+            this.flushDelayMillis = flushDelayMillis;
+            this.maxPendingSize = maxPendingKiloBytes * 1024L;
+            return this;
+        }
+    }
+
     /**
      * Erases all local stores in the root store folder for this app.
      * 
@@ -60,7 +204,7 @@ public class LocalStore extends QueueClient implements Store {
      */
     public static Request<Void> eraseAllDiskStores(Context context) {
         File root = LocalStoreRequest.getRootDirectory(context);
-        EraseRequest request = LocalStoreRequest.newEraseRequest(null, root);
+        EraseRequest request = LocalStoreRequest.newEraseRequest(null, new FileDiskStore(root, false));
         LocalStore store = new LocalStore();
         store.execute(request);
         return request;
@@ -81,14 +225,85 @@ public class LocalStore extends QueueClient implements Store {
      *        delivered through.
      */
     public static Request<Store> open(Context context, String name, int maxMemoryInKiloBytes) {
+        return open(context, name, maxMemoryInKiloBytes, new Options());
+    }
+
+    /**
+     * Creates a new instance of this class, optionally in concurrent mode. A
+     * concurrent store spreads the operations over the given number of worker
+     * threads by key. Operations on the same key are still performed in the
+     * order they were requested.
+     * 
+     * @param context
+     *        Used to fetch the disk storage folder.
+     * @param name
+     *        The name of the store.
+     * @param maxMemoryInKiloBytes
+     *        The memory size constraint.
+     * @param diskThreadCount
+     *        The number of disk worker threads. Zero (or less) will open a
+     *        store which serializes all operations on one single thread.
+     */
+    public static Request<Store> open(Context context, String name, int maxMemoryInKiloBytes, int diskThreadCount) {
+        Options options = new Options()
+                .withDiskThreadCount(diskThreadCount);
+
+        return open(context, name, maxMemoryInKiloBytes, options);
+    }
+
+    /**
+     * Creates a new instance of this class, writing its disk store with the
+     * given codec.
+     * 
+     * @param context
+     *        Used to fetch the disk storage folder.
+     * @param name
+     *        The name of the store.
+     * @param maxMemoryInKiloBytes
+     *        The memory size constraint.
+     * @param diskThreadCount
+     *        The number of disk worker threads. Zero (or less) will open a
+     *        store which serializes all operations on one single thread.
+     * @param valueCodec
+     *        The disk format of the values, e.g. a {@link BinaryValueCodec}.
+     *        Note that a store has to be erased if switching to a codec which
+     *        can't read the previous format.
+     */
+    public static Request<Store> open(Context context, String name, int maxMemoryInKiloBytes, int diskThreadCount, ValueCodec valueCodec) {
+        Options options = new Options()
+                .withDiskThreadCount(diskThreadCount)
+                .withValueCodec(valueCodec);
+
+        return open(context, name, maxMemoryInKiloBytes, options);
+    }
+
+    /**
+     * Creates a new instance of this class, set up as described by the given
+     * options.
+     * 
+     * @param context
+     *        Used to fetch the disk storage folder.
+     * @param name
+     *        The name of the store.
+     * @param maxMemoryInKiloBytes
+     *        The memory size constraint.
+     * @param options
+     *        The set up of the store.
+     */
+    public static Request<Store> open(Context context, String name, int maxMemoryInKiloBytes, Options options) {
         final LocalStore store = new LocalStore();
+        store.valueCodec = options.valueCodec;
+
+        if (options.diskThreadCount > 0) {
+            store.diskExecutor = new StripedExecutor(options.diskThreadCount);
+        }
 
         InitMemoryRequest initMemoryStoreRequest = (InitMemoryRequest) LocalStoreRequest
-                .newInitMemoryStoreRequest(maxMemoryInKiloBytes)
-                .withResultListener(new ResultListener<LruCache<Object, Object>>() {
+                .newInitMemoryStoreRequest(maxMemoryInKiloBytes, options.timeToLiveMillis)
+                .withResultListener(new ResultListener<MemoryStore>() {
 
                     @Override
-                    public boolean onRequestPerformed(LruCache<Object, Object> result) {
+                    public boolean onRequestPerformed(MemoryStore result) {
                         store.memoryStore = result;
                         return false;
                     }
@@ -96,11 +311,11 @@ public class LocalStore extends QueueClient implements Store {
                 });
 
         InitDiskRequest initDiskStoreRequest = (InitDiskRequest) LocalStoreRequest
-                .newInitDiskStoreRequest(context, name)
-                .withResultListener(new ResultListener<File>() {
+                .newInitDiskStoreRequest(context, name, options)
+                .withResultListener(new ResultListener<DiskStore>() {
 
                     @Override
-                    public boolean onRequestPerformed(File result) {
+                    public boolean onRequestPerformed(DiskStore result) {
                         store.diskStore = result;
                         return false;
                     }
@@ -131,12 +346,23 @@ public class LocalStore extends QueueClient implements Store {
     /**
      * The in-memory store.
      */
-    private LruCache<Object, Object> memoryStore;
+    private MemoryStore memoryStore;
+
+    /**
+     * The disk store.
+     */
+    private DiskStore diskStore;
+
+    /**
+     * The disk format of the values.
+     */
+    private ValueCodec valueCodec;
 
     /**
-     * The disk store directory.
+     * The disk workers, or null if this store isn't running in concurrent
+     * mode.
      */
-    private File diskStore;
+    private StripedExecutor diskExecutor;
 
     /**
      * Hidden constructor.
@@ -156,14 +382,15 @@ public class LocalStore extends QueueClient implements Store {
     @Override
     public Request<Void> free() {
         FreeRequest request = LocalStoreRequest.newFreeRequest(memoryStore);
-        execute(request);
+        executeEverywhere(request, false);
         return request;
     }
 
     /**
      * Destroys this instance of the local store. The in memory cache will be
      * cleared and all files in the disk store, as well as the store container
-     * itself, will be deleted.
+     * itself, will be deleted. The disk workers of a store in concurrent mode
+     * are stopped once done.
      * 
      * @throws IllegalStateException
      *         If neither in-memory store, nor disk store has a valid handle.
@@ -184,7 +411,7 @@ public class LocalStore extends QueueClient implements Store {
 
                 });
 
-        execute(request);
+        executeEverywhere(request, true);
         return request;
     }
 
@@ -200,11 +427,75 @@ public class LocalStore extends QueueClient implements Store {
      */
     @Override
     public <T> Request<T> get(Object key, Class<T> classOfValue) throws IllegalStateException {
-        GetRequest<T> request = LocalStoreRequest.newGetRequest(memoryStore, diskStore, key, classOfValue);
-        execute(request);
+        GetRequest<T> request = LocalStoreRequest.newGetRequest(memoryStore, diskStore, key, classOfValue, valueCodec);
+        execute(key, request);
+        return request;
+    }
+
+    /**
+     * Retrieves several objects from the local store, as described by
+     * {@link LocalStore#get(Object, Class)}, in one single operation. The
+     * operation is ordered with all other operations on any of the keys, but
+     * each value is still read from disk on its own.
+     * 
+     * @throws IllegalStateException
+     *         If neither in-memory store, nor disk store has a valid handle.
+     * @see com.podio.sdk.Store#getAll(java.util.Collection, java.lang.Class)
+     */
+    @Override
+    public <T> Request<Map<Object, T>> getAll(Collection<?> keys, Class<T> classOfValue) throws IllegalStateException {
+        // The caller is free to change the collection once this returns.
+        ArrayList<Object> keyList = new ArrayList<Object>(keys);
+        GetAllRequest<T> request = LocalStoreRequest.newGetAllRequest(memoryStore, diskStore, keyList, classOfValue, valueCodec);
+        executeAll(keyList, request);
         return request;
     }
 
+    /**
+     * Looks up an object with the given key in the memory cache only. This is
+     * answered directly on the calling thread, without involving any worker
+     * threads or callbacks, which makes it suitable for rendering cached
+     * content on the main thread without delay.
+     * 
+     * @param key
+     *        The key of the object.
+     * @param classOfValue
+     *        The expected type of the object.
+     * @return The object, or null if it isn't in the memory cache, has expired
+     *         or isn't of the expected type.
+     */
+    public <T> T peek(Object key, Class<T> classOfValue) {
+        MemoryStore memoryStore = this.memoryStore;
+        Object value = memoryStore != null && key != null ? memoryStore.getIfFresh(key) : null;
+        return classOfValue != null && classOfValue.isInstance(value) ? classOfValue.cast(value) : null;
+    }
+
+    /**
+     * Looks up an object with the given key in the memory cache, as described
+     * by {@link LocalStore#peek(Object, Class)}. If it's not found there, it's
+     * fetched from disk and delivered to the given listener instead, once
+     * available.
+     * 
+     * @param key
+     *        The key of the object.
+     * @param classOfValue
+     *        The expected type of the object.
+     * @param diskListener
+     *        The listener to deliver the object to if it has to be fetched from
+     *        disk. It's not called if the object is found in memory.
+     * @return The object, or null if it isn't in the memory cache, has expired
+     *         or isn't of the expected type.
+     */
+    public <T> T peek(Object key, Class<T> classOfValue, ResultListener<T> diskListener) {
+        T value = peek(key, classOfValue);
+
+        if (value == null && diskListener != null) {
+            get(key, classOfValue).withResultListener(diskListener);
+        }
+
+        return value;
+    }
+
     /**
      * Removes an object with the given key from the local store. If the removed
      * value was found in the memory store, then it will be returned, else if it
@@ -218,7 +509,23 @@ public class LocalStore extends QueueClient implements Store {
     @Override
     public Request<Void> remove(Object key) throws IllegalStateException {
         RemoveRequest request = LocalStoreRequest.newRemoveRequest(memoryStore, diskStore, key);
-        execute(request);
+        execute(key, request);
+        return request;
+    }
+
+    /**
+     * Removes several objects from the local store in one single operation,
+     * ordered with all other operations on any of the keys.
+     * 
+     * @throws IllegalStateException
+     *         If neither in-memory store, nor disk store has a valid handle.
+     * @see com.podio.sdk.Store#removeAll(java.util.Collection)
+     */
+    @Override
+    public Request<Void> removeAll(Collection<?> keys) throws IllegalStateException {
+        ArrayList<Object> keyList = new ArrayList<Object>(keys);
+        RemoveAllRequest request = LocalStoreRequest.newRemoveAllRequest(memoryStore, diskStore, keyList);
+        executeAll(keyList, request);
         return request;
     }
 
@@ -234,9 +541,69 @@ public class LocalStore extends QueueClient implements Store {
      */
     @Override
     public Request<Void> set(Object key, Object value) throws IllegalStateException {
-        SetRequest request = LocalStoreRequest.newSetRequest(memoryStore, diskStore, key, value);
-        execute(request);
+        SetRequest request = LocalStoreRequest.newSetRequest(memoryStore, diskStore, key, value, valueCodec);
+        execute(key, request);
+        return request;
+    }
+
+    /**
+     * Adds or updates several values in the local store in one single
+     * operation, ordered with all other operations on any of the keys.
+     * 
+     * @throws IllegalStateException
+     *         If neither in-memory store, nor disk store has a valid handle.
+     * @see com.podio.sdk.Store#setAll(java.util.Map)
+     */
+    @Override
+    public Request<Void> setAll(Map<?, ?> values) throws IllegalStateException {
+        LinkedHashMap<Object, Object> valueMap = new LinkedHashMap<Object, Object>(values);
+        SetAllRequest request = LocalStoreRequest.newSetAllRequest(memoryStore, diskStore, valueMap, valueCodec);
+        executeAll(valueMap.keySet(), request);
         return request;
     }
 
+    /**
+     * Enqueues a request operating on all keys. In concurrent mode the
+     * request is ordered with all other requests, and the disk workers are
+     * optionally stopped once it's done, otherwise it's enqueued in the shared
+     * queue.
+     */
+    private void executeEverywhere(LocalStoreRequest<?> request, boolean doShutdown) {
+        if (diskExecutor != null) {
+            diskExecutor.executeEverywhere(request);
+
+            if (doShutdown) {
+                diskExecutor.shutdown();
+            }
+        } else {
+            execute(request);
+        }
+    }
+
+    /**
+     * Enqueues a request operating on the given keys. In concurrent mode the
+     * request is ordered with the other requests for any of the keys,
+     * otherwise it's enqueued in the shared queue.
+     */
+    private void executeAll(Collection<?> keys, LocalStoreRequest<?> request) {
+        if (diskExecutor != null) {
+            diskExecutor.executeAll(keys, request);
+        } else {
+            execute(request);
+        }
+    }
+
+    /**
+     * Enqueues a request operating on the given key. In concurrent mode the
+     * request is handed to the disk worker owning the key, otherwise it's
+     * enqueued in the shared queue.
+     */
+    private void execute(Object key, LocalStoreRequest<?> request) {
+        if (diskExecutor != null) {
+            diskExecutor.execute(key, request);
+        } else {
+            execute(request);
+        }
+    }
+
 }
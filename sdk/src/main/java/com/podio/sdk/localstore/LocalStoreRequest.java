@@ -22,20 +22,17 @@
 package com.podio.sdk.localstore;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
 
 import android.content.Context;
-import android.util.LruCache;
 
-import com.podio.sdk.JsonParser;
 import com.podio.sdk.Request;
 import com.podio.sdk.internal.CallbackManager;
 
@@ -59,10 +56,10 @@ class LocalStoreRequest<T> extends FutureTask<T> implements Request<T> {
      * @param memoryStore
      *        The memory store to clear and close.
      * @return A request ready for being enqueued in a queue.
-     * @see com.podio.sdk.localstore.LocalStoreRequest#newEraseRequest(LruCache,
-     *      File)
+     * @see com.podio.sdk.localstore.LocalStoreRequest#newEraseRequest(MemoryStore,
+     *      DiskStore)
      */
-    static FreeRequest newFreeRequest(LruCache<Object, Object> memoryStore) {
+    static FreeRequest newFreeRequest(MemoryStore memoryStore) {
         return new FreeRequest(memoryStore);
     }
 
@@ -73,10 +70,10 @@ class LocalStoreRequest<T> extends FutureTask<T> implements Request<T> {
      * @param memoryStore
      *        The in-memory store.
      * @param diskStore
-     *        The file handle to the disk store directory.
+     *        The disk store.
      * @return A request ready for being enqueued in a queue.
      */
-    static EraseRequest newEraseRequest(LruCache<Object, Object> memoryStore, File diskStore) {
+    static EraseRequest newEraseRequest(MemoryStore memoryStore, DiskStore diskStore) {
         return new EraseRequest(memoryStore, diskStore);
     }
 
@@ -88,16 +85,39 @@ class LocalStoreRequest<T> extends FutureTask<T> implements Request<T> {
      * @param memoryStore
      *        The in-memory store.
      * @param diskStore
-     *        The file handle to the disk store directory.
+     *        The disk store.
      * @param key
      *        The key of the value.
      * @param classOfValue
      *        The type to parse the file into (if needed).
+     * @param valueCodec
+     *        The codec the disk store is written with.
      * @return A request ready for being enqueued in a queue.
      */
-    static <E> GetRequest<E> newGetRequest(LruCache<Object, Object> memoryStore,
-            File diskStore, Object key, Class<E> classOfValue) {
-        return new GetRequest<E>(memoryStore, diskStore, key, classOfValue);
+    static <E> GetRequest<E> newGetRequest(MemoryStore memoryStore,
+            DiskStore diskStore, Object key, Class<E> classOfValue, ValueCodec valueCodec) {
+        return new GetRequest<E>(memoryStore, diskStore, key, classOfValue, valueCodec);
+    }
+
+    /**
+     * Creates a new Request for retrieving several values from the local
+     * store. The request will deliver the found values by key.
+     * 
+     * @param memoryStore
+     *        The in-memory store.
+     * @param diskStore
+     *        The disk store.
+     * @param keys
+     *        The keys of the values.
+     * @param classOfValue
+     *        The type to parse the files into (if needed).
+     * @param valueCodec
+     *        The codec the disk store is written with.
+     * @return A request ready for being enqueued in a queue.
+     */
+    static <E> GetAllRequest<E> newGetAllRequest(MemoryStore memoryStore,
+            DiskStore diskStore, Collection<?> keys, Class<E> classOfValue, ValueCodec valueCodec) {
+        return new GetAllRequest<E>(memoryStore, diskStore, keys, classOfValue, valueCodec);
     }
 
     /**
@@ -108,10 +128,12 @@ class LocalStoreRequest<T> extends FutureTask<T> implements Request<T> {
      *        The context from which the cache directory path will be extracted.
      * @param name
      *        The name of the store to initialize.
+     * @param options
+     *        The set up of the disk store.
      * @return A request ready for being enqueued in a queue.
      */
-    static InitDiskRequest newInitDiskStoreRequest(Context context, String name) {
-        return new InitDiskRequest(context, name);
+    static InitDiskRequest newInitDiskStoreRequest(Context context, String name, LocalStore.Options options) {
+        return new InitDiskRequest(context, name, options);
     }
 
     /**
@@ -120,8 +142,8 @@ class LocalStoreRequest<T> extends FutureTask<T> implements Request<T> {
      * 
      * @return A request ready for being enqueued in a queue.
      */
-    static InitMemoryRequest newInitMemoryStoreRequest(int maxMemoryAsKiloBytes) {
-        return new InitMemoryRequest(maxMemoryAsKiloBytes);
+    static InitMemoryRequest newInitMemoryStoreRequest(int maxMemoryAsKiloBytes, long timeToLiveMillis) {
+        return new InitMemoryRequest(maxMemoryAsKiloBytes, timeToLiveMillis);
     }
 
     /**
@@ -130,15 +152,30 @@ class LocalStoreRequest<T> extends FutureTask<T> implements Request<T> {
      * @param memoryStore
      *        The in-memory store.
      * @param diskStore
-     *        The file handle to the disk store directory.
+     *        The disk store.
      * @param key
      *        The key of the value.
      * @return A request ready for being enqueued in a queue.
      */
-    static RemoveRequest newRemoveRequest(LruCache<Object, Object> memoryStore, File diskStore, Object key) {
+    static RemoveRequest newRemoveRequest(MemoryStore memoryStore, DiskStore diskStore, Object key) {
         return new RemoveRequest(memoryStore, diskStore, key);
     }
 
+    /**
+     * Creates a new Request for removing several values from the local store.
+     * 
+     * @param memoryStore
+     *        The in-memory store.
+     * @param diskStore
+     *        The disk store.
+     * @param keys
+     *        The keys of the values.
+     * @return A request ready for being enqueued in a queue.
+     */
+    static RemoveAllRequest newRemoveAllRequest(MemoryStore memoryStore, DiskStore diskStore, Collection<?> keys) {
+        return new RemoveAllRequest(memoryStore, diskStore, keys);
+    }
+
     /**
      * Creates a new request for storing a given value. The request will deliver
      * the previous value if an overwrite has occurred, or a null-pointer if no
@@ -147,16 +184,36 @@ class LocalStoreRequest<T> extends FutureTask<T> implements Request<T> {
      * @param memoryStore
      *        The in-memory store.
      * @param diskStore
-     *        The file handle to the disk store directory.
+     *        The disk store.
      * @param key
      *        The key of the value.
      * @param value
      *        The value.
+     * @param valueCodec
+     *        The codec to write the disk store with.
+     * @return A request ready for being enqueued in a queue.
+     */
+    static SetRequest newSetRequest(MemoryStore memoryStore, DiskStore diskStore,
+            Object key, Object value, ValueCodec valueCodec) {
+        return new SetRequest(memoryStore, diskStore, key, value, valueCodec);
+    }
+
+    /**
+     * Creates a new request for storing several values.
+     * 
+     * @param memoryStore
+     *        The in-memory store.
+     * @param diskStore
+     *        The disk store.
+     * @param values
+     *        The values, by key.
+     * @param valueCodec
+     *        The codec to write the disk store with.
      * @return A request ready for being enqueued in a queue.
      */
-    static SetRequest newSetRequest(LruCache<Object, Object> memoryStore, File diskStore,
-            Object key, Object value) {
-        return new SetRequest(memoryStore, diskStore, key, value);
+    static SetAllRequest newSetAllRequest(MemoryStore memoryStore, DiskStore diskStore,
+            Map<?, ?> values, ValueCodec valueCodec) {
+        return new SetAllRequest(memoryStore, diskStore, values, valueCodec);
     }
 
     /**
@@ -239,72 +296,6 @@ class LocalStoreRequest<T> extends FutureTask<T> implements Request<T> {
         return directory != null && directory.exists() && directory.isDirectory() && directory.canWrite();
     }
 
-    /**
-     * Reads the content of a file and tries to parse it as JSON into an object.
-     * 
-     * @param file
-     *        The file on disk to read from.
-     * @param classOfValue
-     *        The class definition that the JSON should be parsed into.
-     * @return The object stored in the file.
-     * @throws IOException
-     *         If anything went wrong during file access.
-     */
-    protected static <E> E readObjectFromDisk(File file, Class<E> classOfValue) throws IOException {
-        // Validate file.
-        if (!isReadableFile(file)) {
-            return null;
-        }
-
-        if (classOfValue == null || classOfValue.equals(Void.class)) {
-            return null;
-        }
-
-        long length = file.length();
-        if (length < 0 || length > Integer.MAX_VALUE) {
-            return null;
-        }
-
-        // Read from disk.
-        byte[] bytes = new byte[(int) length];
-        FileInputStream fileInputStream = new FileInputStream(file);
-
-        try {
-            fileInputStream.read(bytes);
-        } finally {
-            fileInputStream.close();
-        }
-
-        // Parse JSON to object.
-        String json = new String(bytes);
-        E result = JsonParser.fromJson(json, classOfValue);
-        return result;
-    }
-
-    /**
-     * Tries to write the value to the disk store. An attempt will be made to
-     * parse the value to JSON and on success it will be written to a file with
-     * the same name as the key. The key will be transformed to the file name by
-     * calling the <code>toString()</code> method on it (pick your keys with
-     * great care).
-     * 
-     * @param file
-     *        The {@link File} pointing at the desired destination file on disk.
-     * @param value
-     *        The value that will be serialized to JSON and saved as a file.
-     * @throws IOException
-     */
-    protected static void writeObjectToDisk(File file, Object value) throws IOException {
-        String json = JsonParser.toJson(value);
-        FileOutputStream fileOutputStream = new FileOutputStream(file);
-
-        try {
-            fileOutputStream.write(json.getBytes());
-        } finally {
-            fileOutputStream.close();
-        }
-    }
-
     /**
      * Validates the memory cache and the disk store handles. If none of them
      * are ready for use, an {@link IllegalStateException} is thrown, otherwise
@@ -313,7 +304,7 @@ class LocalStoreRequest<T> extends FutureTask<T> implements Request<T> {
      * @throws IllegalStateException
      *         If neither in-memory store, nor disk store has a valid handle.
      */
-    protected static void validateState(LruCache<Object, Object> memoryStore, File diskStore) throws IllegalStateException {
+    protected static void validateState(MemoryStore memoryStore, DiskStore diskStore) throws IllegalStateException {
         if (memoryStore == null && diskStore == null) {
             throw new IllegalStateException("You're trying to interact with a closed store.");
         }
@@ -0,0 +1,171 @@
+/*
+ *  Copyright (C) 2014 Copyright Citrix Systems, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ *  this software and associated documentation files (the "Software"), to deal in 
+ *  the Software without restriction, including without limitation the rights to 
+ *  use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+ *  of the Software, and to permit persons to whom the Software is furnished to 
+ *  do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all 
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *  SOFTWARE.
+ */
+package com.podio.sdk.localstore;
+
+import java.util.HashMap;
+
+import android.util.LruCache;
+
+/**
+ * The memory cache of a {@link LocalStore}. The size of each value is given by
+ * the caller when the value is added (typically estimated by the
+ * {@link ValueCodec} from the length of the encoded value, which has to be
+ * produced anyway for the disk store) and recorded, rather than calculated
+ * again every time the {@link LruCache} asks for it. So is the time the value
+ * was written, which lets values expire from memory the same way as they do
+ * from disk.
+ */
+final class MemoryStore extends LruCache<Object, Object> {
+
+    /**
+     * The size charged for values added without a known size.
+     */
+    private static final int DEFAULT_SIZE_IN_KILOBYTES = 1;
+
+    /**
+     * The recorded size and time of writing of a value.
+     */
+    private static final class Record {
+        private final Object value;
+        private final int kiloBytes;
+        private final long writtenAt;
+
+        private Record(Object value, int kiloBytes, long writtenAt) {
+            this.value = value;
+            this.kiloBytes = kiloBytes;
+            this.writtenAt = writtenAt;
+        }
+    }
+
+    /**
+     * Converts a size in bytes to whole kilobytes, rounding up. Each value
+     * will be charged at least one kilobyte.
+     */
+    private static int toKiloBytes(long bytes) {
+        long kiloBytes = (bytes + 1023L) / 1024L;
+        return (int) Math.max(1L, Math.min(kiloBytes, Integer.MAX_VALUE));
+    }
+
+    /**
+     * The time after which a value expires. Zero (or less) means never.
+     */
+    private final long timeToLiveMillis;
+
+    /**
+     * The recorded sizes of the current values.
+     */
+    private final HashMap<Object, Record> records;
+
+    /**
+     * The record of a value being replaced by an ongoing put operation.
+     */
+    private Record replacedRecord;
+
+    MemoryStore(int maxKiloBytes, long timeToLiveMillis) {
+        super(maxKiloBytes);
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.records = new HashMap<Object, Record>();
+        this.replacedRecord = null;
+    }
+
+    /**
+     * Looks up a value in the memory cache, dropping it if it has expired.
+     * 
+     * @param key
+     *        The key of the value.
+     * @return The value, or null if there is no value for the key or if it
+     *         has expired.
+     */
+    synchronized Object getIfFresh(Object key) {
+        Object value = get(key);
+
+        if (value != null && timeToLiveMillis > 0L) {
+            Record record = records.get(key);
+
+            if (record != null && System.currentTimeMillis() - record.writtenAt >= timeToLiveMillis) {
+                remove(key);
+                return null;
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * Adds a value to the memory cache, recording its size.
+     * 
+     * @param key
+     *        The key of the value.
+     * @param value
+     *        The value to add.
+     * @param sizeInBytes
+     *        The estimated size of the value.
+     * @param writtenAt
+     *        The time the value was written to the store, which for a value
+     *        read back from disk is when it was written to disk.
+     * @return The previous value of the key, or null.
+     */
+    synchronized Object put(Object key, Object value, long sizeInBytes, long writtenAt) {
+        Record previous = records.get(key);
+
+        if (previous != null && previous.value == value) {
+            // The LruCache charges and discharges a value by the same sizeOf
+            // call, which can't tell the old and the new size of the same
+            // object apart. Discharge the old size before charging the new.
+            remove(key);
+        }
+
+        replacedRecord = records.put(key, new Record(value, toKiloBytes(sizeInBytes), writtenAt));
+
+        try {
+            Object replaced = put(key, value);
+            return previous != null && previous.value == value ? value : replaced;
+        } finally {
+            replacedRecord = null;
+        }
+    }
+
+    @Override
+    protected synchronized void entryRemoved(boolean evicted, Object key, Object oldValue, Object newValue) {
+        Record record = records.get(key);
+
+        if (record != null && record.value == oldValue && newValue != oldValue) {
+            records.remove(key);
+        }
+    }
+
+    @Override
+    protected synchronized int sizeOf(Object key, Object value) {
+        Record record = records.get(key);
+
+        if (record != null && record.value == value) {
+            return record.kiloBytes;
+        }
+
+        if (replacedRecord != null && replacedRecord.value == value) {
+            return replacedRecord.kiloBytes;
+        }
+
+        return DEFAULT_SIZE_IN_KILOBYTES;
+    }
+
+}
@@ -1,47 +1,55 @@
 /*
  *  Copyright (C) 2014 Copyright Citrix Systems, Inc.
  *
- *  Permission is hereby granted, free of charge, to any person obtaining a copy of
- *  this software and associated documentation files (the "Software"), to deal in
- *  the Software without restriction, including without limitation the rights to
- *  use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
- *  of the Software, and to permit persons to whom the Software is furnished to
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ *  this software and associated documentation files (the "Software"), to deal in 
+ *  the Software without restriction, including without limitation the rights to 
+ *  use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+ *  of the Software, and to permit persons to whom the Software is furnished to 
  *  do so, subject to the following conditions:
  *
- *  The above copyright notice and this permission notice shall be included in all
+ *  The above copyright notice and this permission notice shall be included in all 
  *  copies or substantial portions of the Software.
  *
- *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
- *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
- *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
- *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
- *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
- *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
  *  SOFTWARE.
  */
-package com.podio.sdk.push;
+package com.podio.sdk.localstore;
 
+import java.util.Collection;
 import java.util.concurrent.Callable;
 
-class SubscribeRequest extends PushRequest<Void> {
+/**
+ * A specific {@link LocalStoreRequest}, targeting the "remove several values"
+ * operation. This implementation removes all values in one go, as described by
+ * {@link RemoveRequest}.
+ */
+final class RemoveAllRequest extends LocalStoreRequest<Void> {
 
-    SubscribeRequest(final String channel, final String signature, final String timestamp, final Transport transport) {
+    /**
+     * Creates a new Request for removing several values from the local store.
+     * 
+     * @param memoryStore
+     *        The in-memory store.
+     * @param diskStore
+     *        The disk store.
+     * @param keys
+     *        The keys of the values.
+     */
+    RemoveAllRequest(final MemoryStore memoryStore, final DiskStore diskStore, final Collection<?> keys) {
         super(new Callable<Void>() {
 
             @Override
             public Void call() throws Exception {
-                State state = getState();
-                switch (state) {
-                    case unknown:
-                    case closed:
-                        shakeHands(transport);
-                    case initialized:
-                        connect(transport);
-                    case connected:
-                        subscribe(transport, channel, signature, timestamp);
-                        break;
-                    default:
-                        throw new IllegalStateException("Unknown state: " + state);
+                validateState(memoryStore, diskStore);
+
+                for (Object key : keys) {
+                    RemoveRequest.removeValue(memoryStore, diskStore, key);
                 }
 
                 return null;
@@ -49,5 +57,4 @@ class SubscribeRequest extends PushRequest<Void> {
 
         });
     }
-
 }
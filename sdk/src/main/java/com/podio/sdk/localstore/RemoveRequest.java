@@ -21,12 +21,9 @@
  */
 package com.podio.sdk.localstore;
 
-import java.io.File;
 import java.io.IOException;
 import java.util.concurrent.Callable;
 
-import android.util.LruCache;
-
 /**
  * A specific {@link LocalStoreRequest}, targeting the "remove value" operation.
  * This implementation silently removes a value from both the memory cache and
@@ -49,17 +46,15 @@ final class RemoveRequest extends LocalStoreRequest<Void> {
      * @throws IOException
      *         If the file system access fails for some reason.
      */
-    private static final void removeValue(LruCache<Object, Object> memoryStore, File diskStore, Object key) throws IOException {
+    static final void removeValue(MemoryStore memoryStore, DiskStore diskStore, Object key) throws IOException {
         // Remove from memory.
         if (memoryStore != null) {
             memoryStore.remove(key);
         }
 
         // Remove from disk.
-        if (isReadableDirectory(diskStore)) {
-            String fileName = getFileName(key);
-            File file = new File(diskStore, fileName);
-            file.delete();
+        if (diskStore != null) {
+            diskStore.remove(key);
         }
     }
 
@@ -69,12 +64,12 @@ final class RemoveRequest extends LocalStoreRequest<Void> {
      * @param memoryStore
      *        The in-memory store.
      * @param diskStore
-     *        The file handle to the disk store directory.
+     *        The disk store.
      * @param key
      *        The key of the value.
      * @return A request ready for being enqueued in a queue.
      */
-    RemoveRequest(final LruCache<Object, Object> memoryStore, final File diskStore, final Object key) {
+    RemoveRequest(final MemoryStore memoryStore, final DiskStore diskStore, final Object key) {
         super(new Callable<Void>() {
 
             @Override
@@ -0,0 +1,517 @@
+/*
+ *  Copyright (C) 2014 Copyright Citrix Systems, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ *  this software and associated documentation files (the "Software"), to deal in 
+ *  the Software without restriction, including without limitation the rights to 
+ *  use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+ *  of the Software, and to permit persons to whom the Software is furnished to 
+ *  do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all 
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *  SOFTWARE.
+ */
+package com.podio.sdk.localstore;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * A {@link DiskStore} appending all values to one single segment file, rather
+ * than keeping one file per key. The location of the current value of each
+ * key is kept in an in-memory index, and values are read with positional
+ * {@link FileChannel} reads.
+ * <p>
+ * Each record in the segment file holds the key, the value (or a removal
+ * marker), the time of writing and a checksum of all three. The index is
+ * rebuilt by scanning the file when the store is opened. A record that was only partially written, e.g.
+ * due to the app being killed, fails its checksum and is cut off together
+ * with everything after it. Once most of the file is made up of overwritten
+ * or removed values, the live records are copied to a new file which then
+ * replaces the old one.
+ */
+final class SegmentDiskStore implements DiskStore {
+
+    /**
+     * The segment file names contain a character that is always encoded in
+     * the file names of the {@link FileDiskStore}, so they can't collide.
+     */
+    private static final String SEGMENT_FILE_NAME = "~segment.log";
+    private static final String COMPACTION_FILE_NAME = "~segment.compact";
+
+    /**
+     * The key length, value length, checksum and time of writing of a record.
+     */
+    private static final int HEADER_SIZE = 20;
+
+    /**
+     * The value length marking a removed key.
+     */
+    private static final int REMOVED = -1;
+
+    private static final int MAX_KEY_SIZE = 64 * 1024;
+
+    /**
+     * The segment file size below which no compaction is attempted.
+     */
+    private static final long MIN_COMPACTION_SIZE = 1024L * 1024L;
+
+    /**
+     * The position of a live record in the segment file.
+     */
+    private static final class Location {
+        private final long offset;
+        private final int keySize;
+        private final int valueSize;
+        private final long writtenAt;
+
+        private Location(long offset, int keySize, int valueSize, long writtenAt) {
+            this.offset = offset;
+            this.keySize = keySize;
+            this.valueSize = valueSize;
+            this.writtenAt = writtenAt;
+        }
+
+        private long getValueOffset() {
+            return offset + HEADER_SIZE + keySize;
+        }
+
+        private long getRecordSize() {
+            return HEADER_SIZE + keySize + valueSize;
+        }
+    }
+
+    /**
+     * Opens the segment file in the given directory, creating it if needed,
+     * and rebuilds the index.
+     * 
+     * @param directory
+     *        The directory of the store.
+     * @param doSync
+     *        Whether to force the segment file to the storage device after
+     *        each write.
+     * @return The opened disk store.
+     * @throws IOException
+     *         If the segment file couldn't be opened or read.
+     */
+    static SegmentDiskStore open(File directory, boolean doSync) throws IOException {
+        SegmentDiskStore diskStore = new SegmentDiskStore(directory, doSync);
+        diskStore.load();
+        return diskStore;
+    }
+
+    private static int checksumOf(byte[] keyBytes, byte[] valueBytes, long writtenAt) {
+        CRC32 crc = new CRC32();
+        crc.update(keyBytes);
+
+        if (valueBytes != null) {
+            crc.update(valueBytes);
+        }
+
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (writtenAt >>> shift));
+        }
+
+        return (int) crc.getValue();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int count = channel.read(buffer, position + buffer.position());
+
+            if (count < 0) {
+                throw new EOFException("Unexpected end of segment file");
+            }
+        }
+
+        buffer.flip();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    private final File directory;
+    private final boolean doSync;
+    private final ReentrantReadWriteLock lock;
+    private final HashMap<String, Location> index;
+
+    private RandomAccessFile file;
+    private FileChannel channel;
+
+    /**
+     * The position where the next record will be appended.
+     */
+    private long endOffset;
+
+    /**
+     * The number of bytes in the segment file occupied by live records.
+     */
+    private long liveSize;
+
+    private SegmentDiskStore(File directory, boolean doSync) {
+        this.directory = directory;
+        this.doSync = doSync;
+        this.lock = new ReentrantReadWriteLock();
+        this.index = new HashMap<String, Location>();
+        this.endOffset = 0L;
+        this.liveSize = 0L;
+    }
+
+    @Override
+    public void erase() {
+        lock.writeLock().lock();
+
+        try {
+            closeChannel();
+            index.clear();
+            endOffset = 0L;
+            liveSize = 0L;
+
+            new File(directory, SEGMENT_FILE_NAME).delete();
+            new File(directory, COMPACTION_FILE_NAME).delete();
+            directory.delete();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Entry> entries() {
+        lock.readLock().lock();
+
+        try {
+            ArrayList<Entry> entries = new ArrayList<Entry>(index.size());
+
+            for (Map.Entry<String, Location> entry : index.entrySet()) {
+                Location location = entry.getValue();
+                entries.add(new Entry(entry.getKey(), location.valueSize, location.writtenAt));
+            }
+
+            return entries;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public <E> E read(Object key, Class<E> classOfValue, ValueCodec valueCodec) throws IOException {
+        if (!LocalStoreRequest.isValidTemplate(classOfValue)) {
+            return null;
+        }
+
+        InputStream inputStream;
+        lock.readLock().lock();
+
+        try {
+            Location location = index.get(key.toString());
+
+            if (location == null || channel == null) {
+                return null;
+            }
+
+            if (location.valueSize >= MappedInputStream.MIN_MAPPED_SIZE) {
+                // Large values are mapped rather than copied. The mapping
+                // stays valid even if the segment file is replaced by a
+                // compaction.
+                inputStream = MappedInputStream.map(channel, location.getValueOffset(), location.valueSize);
+            } else {
+                ByteBuffer buffer = ByteBuffer.allocate(location.valueSize);
+                readFully(channel, buffer, location.getValueOffset());
+                inputStream = new ByteArrayInputStream(buffer.array(), 0, buffer.limit());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // Decode outside of the lock.
+        return valueCodec.decode(inputStream, classOfValue);
+    }
+
+    @Override
+    public void remove(Object key) throws IOException {
+        lock.writeLock().lock();
+
+        try {
+            String name = key.toString();
+
+            if (index.containsKey(name)) {
+                // The removal has to be recorded, or the value would come
+                // back when the index is rebuilt.
+                append(name, null);
+                compactIfNeeded();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public long sizeOf(Object key) {
+        lock.readLock().lock();
+
+        try {
+            Location location = index.get(key.toString());
+            return location != null ? location.valueSize : 0L;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void sync() throws IOException {
+        lock.writeLock().lock();
+
+        try {
+            if (channel != null) {
+                channel.force(false);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void write(Object key, byte[] bytes) throws IOException {
+        lock.writeLock().lock();
+
+        try {
+            append(key.toString(), bytes);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public long writtenAt(Object key) {
+        lock.readLock().lock();
+
+        try {
+            Location location = index.get(key.toString());
+            return location != null ? location.writtenAt : 0L;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Appends a record to the segment file and updates the index. A null
+     * value records the removal of the key. Must be called with the write
+     * lock held.
+     */
+    private void append(String name, byte[] valueBytes) throws IOException {
+        if (channel == null) {
+            throw new IOException("The disk store has been erased");
+        }
+
+        byte[] keyBytes = name.getBytes("UTF-8");
+        int valueSize = valueBytes != null ? valueBytes.length : 0;
+
+        // An empty key can't be told from a broken record when loading.
+        if (keyBytes.length == 0) {
+            throw new IOException("The key is empty");
+        }
+
+        if (keyBytes.length > MAX_KEY_SIZE) {
+            throw new IOException("The key is too long");
+        }
+
+        long writtenAt = System.currentTimeMillis();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + keyBytes.length + valueSize);
+        buffer.putInt(keyBytes.length);
+        buffer.putInt(valueBytes != null ? valueSize : REMOVED);
+        buffer.putInt(checksumOf(keyBytes, valueBytes, writtenAt));
+        buffer.putLong(writtenAt);
+        buffer.put(keyBytes);
+
+        if (valueBytes != null) {
+            buffer.put(valueBytes);
+        }
+
+        buffer.flip();
+        writeFully(channel, buffer, endOffset);
+
+        if (doSync) {
+            channel.force(false);
+        }
+
+        Location location = valueBytes != null ? new Location(endOffset, keyBytes.length, valueSize, writtenAt) : null;
+        endOffset += buffer.limit();
+        updateIndex(name, location);
+    }
+
+    private void closeChannel() {
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                // Nothing more we can do.
+            }
+        }
+
+        file = null;
+        channel = null;
+    }
+
+    /**
+     * Copies all live records to a new segment file, which then replaces the
+     * current one, if the current segment file is mostly made up of stale
+     * records. Must be called with the write lock held.
+     */
+    private void compactIfNeeded() throws IOException {
+        if (endOffset < MIN_COMPACTION_SIZE || liveSize * 2L > endOffset) {
+            return;
+        }
+
+        File compactionFile = new File(directory, COMPACTION_FILE_NAME);
+        RandomAccessFile target = new RandomAccessFile(compactionFile, "rw");
+        HashMap<String, Location> compactedIndex = new HashMap<String, Location>();
+        long position = 0L;
+
+        try {
+            FileChannel targetChannel = target.getChannel();
+            targetChannel.truncate(0L);
+
+            for (Map.Entry<String, Location> entry : index.entrySet()) {
+                Location location = entry.getValue();
+                long size = location.getRecordSize();
+                long copied = 0L;
+
+                while (copied < size) {
+                    copied += channel.transferTo(location.offset + copied, size - copied, targetChannel);
+                }
+
+                compactedIndex.put(entry.getKey(), new Location(position, location.keySize, location.valueSize, location.writtenAt));
+                position += size;
+            }
+
+            // Make sure the new file is complete before it replaces the old
+            // one.
+            targetChannel.force(true);
+        } finally {
+            target.close();
+        }
+
+        closeChannel();
+        File segmentFile = new File(directory, SEGMENT_FILE_NAME);
+
+        if (!compactionFile.renameTo(segmentFile)) {
+            // Keep using the old segment file.
+            compactionFile.delete();
+            openChannel();
+            return;
+        }
+
+        openChannel();
+        index.clear();
+        index.putAll(compactedIndex);
+        endOffset = position;
+        liveSize = position;
+    }
+
+    /**
+     * Scans the segment file and rebuilds the index, cutting off any trailing
+     * records that were only partially written.
+     */
+    private void load() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Couldn't create the disk store directory");
+        }
+
+        // A left-over from a compaction that never finished.
+        new File(directory, COMPACTION_FILE_NAME).delete();
+
+        lock.writeLock().lock();
+
+        try {
+            openChannel();
+
+            long size = channel.size();
+            long position = 0L;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+
+            while (position + HEADER_SIZE <= size) {
+                header.clear();
+                readFully(channel, header, position);
+
+                int keySize = header.getInt();
+                int valueSize = header.getInt();
+                int checksum = header.getInt();
+                long writtenAt = header.getLong();
+                long recordSize = HEADER_SIZE + (long) keySize + Math.max(valueSize, 0);
+
+                if (keySize <= 0 || keySize > MAX_KEY_SIZE || valueSize < REMOVED || position + recordSize > size) {
+                    break;
+                }
+
+                ByteBuffer keyBuffer = ByteBuffer.allocate(keySize);
+                readFully(channel, keyBuffer, position + HEADER_SIZE);
+                byte[] valueBytes = null;
+
+                if (valueSize != REMOVED) {
+                    ByteBuffer valueBuffer = ByteBuffer.allocate(valueSize);
+                    readFully(channel, valueBuffer, position + HEADER_SIZE + keySize);
+                    valueBytes = valueBuffer.array();
+                }
+
+                if (checksum != checksumOf(keyBuffer.array(), valueBytes, writtenAt)) {
+                    break;
+                }
+
+                String name = new String(keyBuffer.array(), "UTF-8");
+                Location location = valueBytes != null ? new Location(position, keySize, valueSize, writtenAt) : null;
+                updateIndex(name, location);
+                position += recordSize;
+            }
+
+            if (position < size) {
+                channel.truncate(position);
+            }
+
+            endOffset = position;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void openChannel() throws IOException {
+        file = new RandomAccessFile(new File(directory, SEGMENT_FILE_NAME), "rw");
+        channel = file.getChannel();
+    }
+
+    private void updateIndex(String name, Location location) {
+        Location previous = location != null ? index.put(name, location) : index.remove(name);
+
+        if (previous != null) {
+            liveSize -= previous.getRecordSize();
+        }
+
+        if (location != null) {
+            liveSize += location.getRecordSize();
+        }
+    }
+
+}
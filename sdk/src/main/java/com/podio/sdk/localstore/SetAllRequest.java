@@ -0,0 +1,62 @@
+/*
+ *  Copyright (C) 2014 Copyright Citrix Systems, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ *  this software and associated documentation files (the "Software"), to deal in 
+ *  the Software without restriction, including without limitation the rights to 
+ *  use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+ *  of the Software, and to permit persons to whom the Software is furnished to 
+ *  do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all 
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *  SOFTWARE.
+ */
+package com.podio.sdk.localstore;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * A specific {@link LocalStoreRequest}, targeting the "store several values"
+ * operation. This implementation stores all values in one go, as described by
+ * {@link SetRequest}.
+ */
+final class SetAllRequest extends LocalStoreRequest<Void> {
+
+    /**
+     * Creates a new request for storing several values.
+     * 
+     * @param memoryStore
+     *        The in-memory store.
+     * @param diskStore
+     *        The disk store.
+     * @param values
+     *        The values to store, by key.
+     * @param valueCodec
+     *        The codec to write the disk store with.
+     */
+    SetAllRequest(final MemoryStore memoryStore, final DiskStore diskStore, final Map<?, ?> values, final ValueCodec valueCodec) {
+        super(new Callable<Void>() {
+
+            @Override
+            public Void call() throws Exception {
+                validateState(memoryStore, diskStore);
+
+                for (Map.Entry<?, ?> entry : values.entrySet()) {
+                    SetRequest.setValue(memoryStore, diskStore, entry.getKey(), entry.getValue(), valueCodec);
+                }
+
+                return null;
+            }
+
+        });
+    }
+}
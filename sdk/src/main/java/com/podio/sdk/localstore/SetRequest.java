@@ -21,12 +21,9 @@
  */
 package com.podio.sdk.localstore;
 
-import java.io.File;
 import java.io.IOException;
 import java.util.concurrent.Callable;
 
-import android.util.LruCache;
-
 /**
  * A specific {@link LocalStoreRequest}, targeting the "store value" operation.
  * This implementation adds a value to both the memory cache as well as the
@@ -49,22 +46,24 @@ final class SetRequest extends LocalStoreRequest<Void> {
      *        The key of the value to store.
      * @param value
      *        The value to store.
-     * @return The currently store object (may be null if the value couldn't be
-     *         properly stored).
+     * @param valueCodec
+     *        The codec to write the disk store with.
      * @throws IOException
      *         If the file system operation fails for some reason.
      */
-    private static final void setValue(LruCache<Object, Object> memoryStore, File diskStore, Object key, Object value) throws IOException {
+    static final void setValue(MemoryStore memoryStore, DiskStore diskStore, Object key, Object value, ValueCodec valueCodec) throws IOException {
+        // The encoded value is needed for the disk store anyway, and its
+        // length gives a cheap estimate of the memory footprint of the value.
+        byte[] bytes = valueCodec.encode(value);
+
         // Update memory
         if (memoryStore != null) {
-            memoryStore.put(key, value);
+            memoryStore.put(key, value, valueCodec.estimateDecodedSize(bytes.length), System.currentTimeMillis());
         }
 
         // Update disk.
         if (diskStore != null) {
-            String fileName = getFileName(key);
-            File file = new File(diskStore, fileName);
-            writeObjectToDisk(file, value);
+            diskStore.write(key, bytes);
         }
     }
 
@@ -74,19 +73,21 @@ final class SetRequest extends LocalStoreRequest<Void> {
      * @param memoryStore
      *        The in-memory store.
      * @param diskStore
-     *        The file handle to the disk store directory.
+     *        The disk store.
      * @param key
      *        The key of the value.
      * @param value
      *        The value to store.
+     * @param valueCodec
+     *        The codec to write the disk store with.
      */
-    SetRequest(final LruCache<Object, Object> memoryStore, final File diskStore, final Object key, final Object value) {
+    SetRequest(final MemoryStore memoryStore, final DiskStore diskStore, final Object key, final Object value, final ValueCodec valueCodec) {
         super(new Callable<Void>() {
 
             @Override
             public Void call() throws Exception {
                 validateState(memoryStore, diskStore);
-                setValue(memoryStore, diskStore, key, value);
+                setValue(memoryStore, diskStore, key, value, valueCodec);
                 return null;
             }
 
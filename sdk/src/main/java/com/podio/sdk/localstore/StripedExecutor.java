@@ -0,0 +1,196 @@
+/*
+ *  Copyright (C) 2014 Copyright Citrix Systems, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ *  this software and associated documentation files (the "Software"), to deal in 
+ *  the Software without restriction, including without limitation the rights to 
+ *  use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+ *  of the Software, and to permit persons to whom the Software is furnished to 
+ *  do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all 
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *  SOFTWARE.
+ */
+package com.podio.sdk.localstore;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.podio.sdk.internal.DaemonThreadFactory;
+
+/**
+ * Spreads tasks over a fixed set of single threaded executors, picking the
+ * executor by the key the task operates on. Tasks for different keys may run
+ * in parallel, while tasks for the same key are always run in the order they
+ * were submitted.
+ */
+final class StripedExecutor {
+
+    /**
+     * The executors, each with a single daemon worker thread.
+     */
+    private final ExecutorService[] stripes;
+
+    StripedExecutor(int stripeCount) {
+        if (stripeCount <= 0) {
+            throw new IllegalArgumentException("The number of stripes must be positive");
+        }
+
+        stripes = new ExecutorService[stripeCount];
+
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new DaemonThreadFactory("podio-store-disk"));
+        }
+    }
+
+    /**
+     * Enqueues the given task on the executor owning the given key.
+     * 
+     * @param key
+     *        The key the task operates on.
+     * @param request
+     *        The task to execute.
+     */
+    void execute(Object key, FutureTask<?> request) {
+        execute(indexOf(key), request);
+    }
+
+    /**
+     * Enqueues the given task, operating on several keys, so that it runs
+     * after all tasks already enqueued for any of the keys, and before any
+     * tasks enqueued for them later on. The task is run on one of the
+     * involved executors while the others are held up until it's done.
+     * 
+     * @param keys
+     *        The keys the task operates on.
+     * @param request
+     *        The task to execute.
+     */
+    void executeAll(Collection<?> keys, FutureTask<?> request) {
+        TreeSet<Integer> indices = new TreeSet<Integer>();
+
+        for (Object key : keys) {
+            indices.add(indexOf(key));
+        }
+
+        execute(indices, request);
+    }
+
+    /**
+     * Enqueues the given task, operating on all keys, so that it runs after
+     * all tasks already enqueued and before any tasks enqueued later on.
+     * 
+     * @param request
+     *        The task to execute.
+     */
+    void executeEverywhere(FutureTask<?> request) {
+        TreeSet<Integer> indices = new TreeSet<Integer>();
+
+        for (int i = 0; i < stripes.length; i++) {
+            indices.add(i);
+        }
+
+        execute(indices, request);
+    }
+
+    /**
+     * Lets the already enqueued tasks finish, and then stops the worker
+     * threads. No further tasks are accepted.
+     */
+    synchronized void shutdown() {
+        for (ExecutorService stripe : stripes) {
+            stripe.shutdown();
+        }
+    }
+
+    private void execute(int index, Runnable task) {
+        try {
+            stripes[index].execute(task);
+        } catch (RejectedExecutionException e) {
+            throw new IllegalStateException("The store has been closed", e);
+        }
+    }
+
+    /**
+     * Enqueues the given task on all the given executors, as described by
+     * {@link StripedExecutor#executeAll(Collection, FutureTask)}.
+     */
+    private void execute(TreeSet<Integer> indices, final FutureTask<?> request) {
+        if (indices.size() <= 1) {
+            execute(indices.isEmpty() ? 0 : indices.first(), request);
+            return;
+        }
+
+        final CountDownLatch isReady = new CountDownLatch(indices.size() - 1);
+        final CountDownLatch isDone = new CountDownLatch(1);
+
+        // Enqueuing all parts atomically gives all multi key tasks the same
+        // order on all executors, which is what prevents them from waiting for
+        // each other.
+        synchronized (this) {
+            Iterator<Integer> iterator = indices.iterator();
+
+            execute(iterator.next(), new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        isReady.await();
+                        request.run();
+                    } catch (InterruptedException e) {
+                        request.cancel(false);
+                    } finally {
+                        isDone.countDown();
+                    }
+                }
+
+            });
+
+            while (iterator.hasNext()) {
+                execute(iterator.next(), new Runnable() {
+
+                    @Override
+                    public void run() {
+                        isReady.countDown();
+
+                        try {
+                            isDone.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+
+                });
+            }
+        }
+    }
+
+    /**
+     * Finds the stripe for the given key. The disk store addresses values by
+     * the string representation of their keys, hence the stripe is picked
+     * the same way.
+     */
+    private int indexOf(Object key) {
+        int hash = key != null ? key.toString().hashCode() : 0;
+        hash ^= (hash >>> 16);
+        return (hash & 0x7fffffff) % stripes.length;
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ *  Copyright (C) 2014 Copyright Citrix Systems, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ *  this software and associated documentation files (the "Software"), to deal in 
+ *  the Software without restriction, including without limitation the rights to 
+ *  use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+ *  of the Software, and to permit persons to whom the Software is furnished to 
+ *  do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all 
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *  SOFTWARE.
+ */
+package com.podio.sdk.localstore;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Describes how the values of a {@link LocalStore} are represented on disk.
+ * Implementations must be thread safe, as a store may be accessed from several
+ * worker threads at once.
+ * 
+ * @see JsonValueCodec
+ * @see BinaryValueCodec
+ */
+public interface ValueCodec {
+
+    /**
+     * Encodes the given value into its disk representation.
+     * 
+     * @param value
+     *        The value to encode.
+     * @return The bytes to write to disk.
+     * @throws IOException
+     *         If the value couldn't be encoded.
+     */
+    public byte[] encode(Object value) throws IOException;
+
+    /**
+     * Decodes a value from its disk representation. The caller is responsible
+     * for closing the stream.
+     * 
+     * @param inputStream
+     *        The stream to read the bytes from.
+     * @param classOfValue
+     *        The type of the value.
+     * @return The decoded value.
+     * @throws IOException
+     *         If the bytes couldn't be read or decoded.
+     */
+    public <T> T decode(InputStream inputStream, Class<T> classOfValue) throws IOException;
+
+    /**
+     * Estimates the memory footprint of a decoded value from the size of its
+     * disk representation. The memory cache charges values by this estimate,
+     * both when they're written and when they're read back from disk, so it
+     * must be based on the encoded size alone.
+     * 
+     * @param encodedSize
+     *        The size of the disk representation, in bytes.
+     * @return The estimated size of the decoded value, in bytes.
+     */
+    public long estimateDecodedSize(long encodedSize);
+
+}
@@ -0,0 +1,284 @@
+/*
+ *  Copyright (C) 2014 Copyright Citrix Systems, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ *  this software and associated documentation files (the "Software"), to deal in 
+ *  the Software without restriction, including without limitation the rights to 
+ *  use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+ *  of the Software, and to permit persons to whom the Software is furnished to 
+ *  do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all 
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *  SOFTWARE.
+ */
+package com.podio.sdk.localstore;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.podio.sdk.internal.DaemonThreadFactory;
+
+/**
+ * A {@link DiskStore} buffering writes and removals in memory before handing
+ * them to the actual disk store in batches. Repeated writes of the same key
+ * within one batch only reach the disk once. A batch is flushed when the
+ * flush delay has passed since its first write, or as soon as the buffered
+ * values exceed a size limit, whichever happens first.
+ * <p>
+ * Reads are answered from the buffer when possible, so callers never see
+ * stale values. A write or removal the disk store fails is kept in the buffer
+ * and tried again with the next batch. Buffered writes are lost if the
+ * process dies before they are flushed, which is acceptable for a cache.
+ */
+final class WriteBehindDiskStore implements DiskStore {
+
+    /**
+     * Marks a buffered removal.
+     */
+    private static final byte[] REMOVED = new byte[0];
+
+    private final DiskStore diskStore;
+    private final long flushDelayMillis;
+    private final long maxPendingSize;
+    private final boolean doSync;
+
+    /**
+     * The buffered values by key, in the order they were first written.
+     */
+    private final LinkedHashMap<String, byte[]> pending;
+
+    /**
+     * Serializes the flushes, ensuring an older value of a key is never
+     * written after a newer one.
+     */
+    private final Object flushLock;
+
+    private ScheduledExecutorService flushScheduler;
+    private boolean isFlushScheduled;
+    private long pendingSize;
+
+    /**
+     * @param diskStore
+     *        The disk store to write the batches to.
+     * @param flushDelayMillis
+     *        The max time a write is buffered.
+     * @param maxPendingSize
+     *        The max number of buffered bytes.
+     * @param doSync
+     *        Whether to force the disk store to the storage device after
+     *        each batch.
+     */
+    WriteBehindDiskStore(DiskStore diskStore, long flushDelayMillis, long maxPendingSize, boolean doSync) {
+        this.diskStore = diskStore;
+        this.flushDelayMillis = flushDelayMillis;
+        this.maxPendingSize = maxPendingSize;
+        this.doSync = doSync;
+        this.pending = new LinkedHashMap<String, byte[]>();
+        this.flushLock = new Object();
+        this.isFlushScheduled = false;
+        this.pendingSize = 0L;
+    }
+
+    @Override
+    public List<Entry> entries() throws IOException {
+        flush();
+        return diskStore.entries();
+    }
+
+    @Override
+    public void erase() {
+        flush();
+
+        synchronized (flushLock) {
+            synchronized (this) {
+                pending.clear();
+                pendingSize = 0L;
+                isFlushScheduled = false;
+
+                // Nothing is left to flush. The scheduler is started again
+                // on demand.
+                if (flushScheduler != null) {
+                    flushScheduler.shutdown();
+                    flushScheduler = null;
+                }
+            }
+
+            diskStore.erase();
+        }
+    }
+
+    /**
+     * Writes all buffered values to the disk store.
+     */
+    void flush() {
+        synchronized (flushLock) {
+            ArrayList<Map.Entry<String, byte[]>> batch;
+
+            synchronized (this) {
+                isFlushScheduled = false;
+                batch = new ArrayList<Map.Entry<String, byte[]>>(pending.size());
+
+                for (Map.Entry<String, byte[]> entry : pending.entrySet()) {
+                    batch.add(new AbstractMap.SimpleImmutableEntry<String, byte[]>(entry));
+                }
+            }
+
+            for (Map.Entry<String, byte[]> entry : batch) {
+                try {
+                    if (entry.getValue() == REMOVED) {
+                        diskStore.remove(entry.getKey());
+                    } else {
+                        diskStore.write(entry.getKey(), entry.getValue());
+                    }
+                } catch (IOException e) {
+                    // There is no one to tell. Keep the value pending, or a
+                    // failed removal would make the old value on disk
+                    // readable again. It's tried again with the next batch.
+                    continue;
+                }
+
+                synchronized (this) {
+                    // Keep the value if it has been replaced meanwhile. It
+                    // will be written with the next batch.
+                    if (pending.get(entry.getKey()) == entry.getValue()) {
+                        pending.remove(entry.getKey());
+                        pendingSize -= entry.getValue().length;
+                    }
+                }
+            }
+
+            if (doSync) {
+                try {
+                    diskStore.sync();
+                } catch (IOException e) {
+                    // There is no one to tell. The next batch syncs again.
+                }
+            }
+        }
+    }
+
+    @Override
+    public <E> E read(Object key, Class<E> classOfValue, ValueCodec valueCodec) throws IOException {
+        byte[] bytes;
+
+        synchronized (this) {
+            bytes = pending.get(key.toString());
+        }
+
+        if (bytes == REMOVED) {
+            return null;
+        }
+
+        if (bytes != null) {
+            return LocalStoreRequest.isValidTemplate(classOfValue) ?
+                    valueCodec.decode(new ByteArrayInputStream(bytes), classOfValue) :
+                    null;
+        }
+
+        return diskStore.read(key, classOfValue, valueCodec);
+    }
+
+    @Override
+    public void remove(Object key) throws IOException {
+        enqueue(key.toString(), REMOVED);
+    }
+
+    @Override
+    public long sizeOf(Object key) {
+        byte[] bytes;
+
+        synchronized (this) {
+            bytes = pending.get(key.toString());
+        }
+
+        return bytes != null ? bytes.length : diskStore.sizeOf(key);
+    }
+
+    @Override
+    public void sync() throws IOException {
+        flush();
+    }
+
+    @Override
+    public void write(Object key, byte[] bytes) throws IOException {
+        enqueue(key.toString(), bytes);
+    }
+
+    @Override
+    public long writtenAt(Object key) {
+        byte[] bytes;
+
+        synchronized (this) {
+            bytes = pending.get(key.toString());
+        }
+
+        if (bytes == REMOVED) {
+            return 0L;
+        }
+
+        // A pending value was written no longer ago than the flush delay.
+        return bytes != null ? System.currentTimeMillis() : diskStore.writtenAt(key);
+    }
+
+    private void enqueue(String name, byte[] bytes) {
+        boolean isFull;
+
+        synchronized (this) {
+            byte[] previous = pending.put(name, bytes);
+
+            if (previous != null) {
+                pendingSize -= previous.length;
+            }
+
+            pendingSize += bytes.length;
+            isFull = pendingSize >= maxPendingSize;
+
+            if (!isFull && !isFlushScheduled) {
+                isFlushScheduled = true;
+                getFlushScheduler().schedule(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        flush();
+                    }
+
+                }, flushDelayMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (isFull) {
+            flush();
+        }
+    }
+
+    /**
+     * Must be called while holding the lock on this instance.
+     */
+    private ScheduledExecutorService getFlushScheduler() {
+        if (flushScheduler == null) {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+                    new DaemonThreadFactory("podio-store-flush"));
+            executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+            flushScheduler = executor;
+        }
+
+        return flushScheduler;
+    }
+
+}
@@ -22,11 +22,24 @@
 
 package com.podio.sdk.provider;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
 import com.podio.sdk.Filter;
 import com.podio.sdk.Request;
+import com.podio.sdk.Request.ErrorListener;
 import com.podio.sdk.Request.ResultListener;
 import com.podio.sdk.Request.SessionListener;
 import com.podio.sdk.domain.Item;
+import com.podio.sdk.internal.DaemonThreadFactory;
+import com.podio.sdk.internal.DeferredRequest;
 import com.podio.sdk.volley.VolleyProvider;
 
 /**
@@ -220,8 +233,406 @@ public class ItemProvider extends VolleyProvider {
             Path filter = new Path().withApplicationAndViewIdFilter(applicationId, viewId);
             return post(filter, filterData, Item.FilterResult.class);
         }
+
+        /**
+         * Pages through the filtered items of the application with the given
+         * id, prefetching at most one page ahead of the caller.
+         * 
+         * @param applicationId
+         *        The id of the parent application.
+         * @param pageSize
+         *        The max number of items to fetch per page.
+         * @return A pager delivering the filtered items page by page.
+         * @see {@link ItemFilterProvider#page(long, int, int)}
+         */
+        public ItemPager page(long applicationId, int pageSize) {
+            return page(applicationId, pageSize, 1);
+        }
+
+        /**
+         * Pages through the filtered items of the application with the given
+         * id. Any offset or limit configured through
+         * {@link ItemFilterProvider#onSpan(int, int)} is overridden by the
+         * pager.
+         * 
+         * @param applicationId
+         *        The id of the parent application.
+         * @param pageSize
+         *        The max number of items to fetch per page.
+         * @param maxBufferedPages
+         *        The max number of pages fetched ahead of the caller.
+         * @return A pager delivering the filtered items page by page.
+         */
+        public ItemPager page(long applicationId, int pageSize, int maxBufferedPages) {
+            Path filter = new Path().withApplicationIdFilter(applicationId);
+            return new ItemPager(filter, filterData, pageSize, maxBufferedPages);
+        }
     }
 
+    /**
+     * Delivers the items of a filter one page at a time. The next page is
+     * fetched while the caller is consuming the current one, but never more
+     * than a given number of pages are kept waiting for the caller. Hence the
+     * memory footprint stays constant no matter how many items the filter
+     * yields.
+     * <p>
+     * Each page is delivered through a request future of its own, so the
+     * pages can be consumed either with callbacks or, from a worker thread,
+     * by blocking on {@link Request#get()}.
+     */
+    public class ItemPager {
+        private final Path filter;
+        private final Item.FilterData filterData;
+        private final int pageSize;
+        private final int maxBufferedPages;
+
+        /**
+         * The pages fetched, or being fetched, that have not yet been handed
+         * out to the caller.
+         */
+        private final ArrayDeque<DeferredRequest<List<Item>>> pages;
+
+        /**
+         * The pages handed out to the caller ahead of being fetched, in
+         * order. They're fetched one at a time, before any further pages.
+         */
+        private final ArrayDeque<DeferredRequest<List<Item>>> claimedPages;
+
+        private Request<Item.FilterResult> pendingRequest;
+        private int nextOffset;
+        private boolean isExhausted;
+        private boolean isCancelled;
+
+        private ItemPager(Path filter, Item.FilterData filterData, int pageSize, int maxBufferedPages) {
+            if (pageSize <= 0 || maxBufferedPages <= 0) {
+                throw new IllegalArgumentException("The page size and buffer size must be positive");
+            }
+
+            this.filter = filter;
+            this.filterData = new Item.FilterData(filterData);
+            this.pageSize = pageSize;
+            this.maxBufferedPages = maxBufferedPages;
+            this.pages = new ArrayDeque<DeferredRequest<List<Item>>>(maxBufferedPages);
+            this.claimedPages = new ArrayDeque<DeferredRequest<List<Item>>>();
+            this.nextOffset = filterData.getOffset();
+            this.isExhausted = false;
+            this.isCancelled = false;
+
+            fetchAhead();
+        }
+
+        /**
+         * Cancels any pending page requests. No further pages will be fetched.
+         */
+        public synchronized void cancel() {
+            isCancelled = true;
+
+            if (pendingRequest != null) {
+                pendingRequest.cancel(true);
+                pendingRequest = null;
+            }
+
+            for (DeferredRequest<List<Item>> page : pages) {
+                page.cancel(true);
+            }
+
+            for (DeferredRequest<List<Item>> page : claimedPages) {
+                page.cancel(true);
+            }
+
+            pages.clear();
+            claimedPages.clear();
+        }
+
+        /**
+         * Tells whether there may be more pages to fetch. Note that the very
+         * last page may turn out to be empty if the total number of items is
+         * a multiple of the page size.
+         * 
+         * @return Boolean true if {@link ItemPager#next()} can be called,
+         *         false otherwise.
+         */
+        public synchronized boolean hasNext() {
+            return !isCancelled && (!pages.isEmpty() || !isExhausted);
+        }
+
+        /**
+         * Hands out the next page of items, and starts fetching the pages
+         * after it. The pager may be asked for several pages before the first
+         * one has arrived, they're fetched one after the other. Pages asked
+         * for beyond the last one are delivered empty.
+         * 
+         * @return A ticket which the caller can use to identify this request
+         *         with. The delivered list is unmodifiable.
+         * @throws IllegalStateException
+         *         If there are no more pages, or the pager has been cancelled.
+         */
+        public synchronized Request<List<Item>> next() {
+            if (!hasNext()) {
+                throw new IllegalStateException("There are no more pages");
+            }
+
+            DeferredRequest<List<Item>> page = pages.poll();
+
+            if (page == null) {
+                // The page being fetched, if any, is claimed already.
+                page = new DeferredRequest<List<Item>>();
+                claimedPages.add(page);
+            }
+
+            fetchAhead();
+            return page;
+        }
+
+        /**
+         * Starts fetching the next page, unless there is a fetch already in
+         * progress or the buffer is full. Pages claimed by the caller are
+         * fetched first.
+         */
+        private synchronized void fetchAhead() {
+            if (isCancelled || isExhausted || pendingRequest != null) {
+                return;
+            }
+
+            DeferredRequest<List<Item>> claimedPage = claimedPages.poll();
+
+            if (claimedPage == null && pages.size() >= maxBufferedPages) {
+                return;
+            }
+
+            final DeferredRequest<List<Item>> page;
+
+            if (claimedPage != null) {
+                page = claimedPage;
+            } else {
+                page = new DeferredRequest<List<Item>>();
+                pages.add(page);
+            }
+
+            // The filter data is serialized when the request is created, so
+            // it's safe to reuse it for the following pages.
+            filterData.setLimit(pageSize);
+            filterData.setOffset(nextOffset);
+
+            pendingRequest = post(filter, filterData, Item.FilterResult.class)
+                    .withResultListener(new ResultListener<Item.FilterResult>() {
+
+                        @Override
+                        public boolean onRequestPerformed(Item.FilterResult result) {
+                            onPageFetched(page, result);
+                            return false;
+                        }
+
+                    })
+                    .withErrorListener(new ErrorListener() {
+
+                        @Override
+                        public boolean onErrorOccured(Throwable cause) {
+                            onPageFailed(page, cause);
+                            return false;
+                        }
+
+                    });
+        }
+
+        private void onPageFetched(DeferredRequest<List<Item>> page, Item.FilterResult result) {
+            List<Item> items = result != null ?
+                    result.getItemsView() :
+                    Collections.<Item> emptyList();
+
+            synchronized (this) {
+                if (isCancelled) {
+                    return;
+                }
+
+                pendingRequest = null;
+                nextOffset += items.size();
+                isExhausted = items.size() < pageSize ||
+                        (result != null && nextOffset >= result.getFilteredCount());
+            }
+
+            page.deliverResult(items);
+            fetchAhead();
+
+            // Pages claimed beyond the last one are empty.
+            for (DeferredRequest<List<Item>> claimedPage : takeClaimedPagesIfExhausted()) {
+                claimedPage.deliverResult(Collections.<Item> emptyList());
+            }
+        }
+
+        private void onPageFailed(DeferredRequest<List<Item>> page, Throwable cause) {
+            synchronized (this) {
+                if (isCancelled) {
+                    return;
+                }
+
+                // Don't keep hammering the API. The caller will have to start
+                // over from the last successfully delivered page.
+                pendingRequest = null;
+                isExhausted = true;
+            }
+
+            page.deliverError(cause);
+
+            for (DeferredRequest<List<Item>> claimedPage : takeClaimedPagesIfExhausted()) {
+                claimedPage.deliverError(cause);
+            }
+        }
+
+        private synchronized ArrayList<DeferredRequest<List<Item>>> takeClaimedPagesIfExhausted() {
+            ArrayList<DeferredRequest<List<Item>>> result = new ArrayList<DeferredRequest<List<Item>>>();
+
+            if (isExhausted) {
+                result.addAll(claimedPages);
+                claimedPages.clear();
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * Collects requests for single items in the same application and fetches
+     * them all with one filter request, once the batch window closes or the
+     * batch is full. Each caller still gets a request future of its own.
+     */
+    private final class ItemBatch implements Runnable {
+        private final long applicationId;
+        private final LinkedHashMap<Long, ArrayList<DeferredRequest<Item>>> requests;
+
+        private ItemBatch(long applicationId) {
+            this.applicationId = applicationId;
+            this.requests = new LinkedHashMap<Long, ArrayList<DeferredRequest<Item>>>();
+        }
+
+        private DeferredRequest<Item> add(long itemId) {
+            ArrayList<DeferredRequest<Item>> waiting = requests.get(itemId);
+
+            if (waiting == null) {
+                waiting = new ArrayList<DeferredRequest<Item>>();
+                requests.put(itemId, waiting);
+            }
+
+            DeferredRequest<Item> request = new DeferredRequest<Item>();
+            waiting.add(request);
+
+            return request;
+        }
+
+        private int size() {
+            return requests.size();
+        }
+
+        @Override
+        public void run() {
+            synchronized (batches) {
+                // The batch may already have been sent due to its size.
+                if (batches.get(applicationId) != this) {
+                    return;
+                }
+
+                batches.remove(applicationId);
+            }
+
+            send();
+        }
+
+        private void send() {
+            if (requests.size() == 1) {
+                Entry<Long, ArrayList<DeferredRequest<Item>>> entry = requests.entrySet().iterator().next();
+                fetchSeparately(entry.getKey(), entry.getValue());
+                return;
+            }
+
+            Item.FilterData filterData = new Item.FilterData()
+                    .setDoRemember(false)
+                    .setLimit(requests.size());
+
+            filterData.addConstraint("item_id", new ArrayList<Long>(requests.keySet()));
+
+            Path filter = new Path().withApplicationIdFilter(applicationId);
+            Request<Item.FilterResult> batchRequest = post(filter, filterData, Item.FilterResult.class);
+
+            for (ArrayList<DeferredRequest<Item>> waiting : requests.values()) {
+                for (DeferredRequest<Item> request : waiting) {
+                    request.withSessionSource(batchRequest);
+                }
+            }
+
+            batchRequest
+                    .withResultListener(new ResultListener<Item.FilterResult>() {
+
+                        @Override
+                        public boolean onRequestPerformed(Item.FilterResult result) {
+                            if (result != null) {
+                                for (Item item : result.getItems()) {
+                                    ArrayList<DeferredRequest<Item>> waiting = requests.remove(item.getId());
+
+                                    if (waiting != null) {
+                                        for (DeferredRequest<Item> request : waiting) {
+                                            request.deliverResult(item);
+                                        }
+                                    }
+                                }
+                            }
+
+                            // Anything the filter didn't give us is fetched
+                            // the old fashioned way, making sure the callers
+                            // get the very same response as they otherwise
+                            // would have (e.g. a "not found" error).
+                            for (Entry<Long, ArrayList<DeferredRequest<Item>>> entry : requests.entrySet()) {
+                                fetchSeparately(entry.getKey(), entry.getValue());
+                            }
+
+                            requests.clear();
+                            return false;
+                        }
+
+                    })
+                    .withErrorListener(new ErrorListener() {
+
+                        @Override
+                        public boolean onErrorOccured(Throwable cause) {
+                            for (ArrayList<DeferredRequest<Item>> waiting : requests.values()) {
+                                for (DeferredRequest<Item> request : waiting) {
+                                    request.deliverError(cause);
+                                }
+                            }
+
+                            requests.clear();
+                            return false;
+                        }
+
+                    });
+        }
+
+        private void fetchSeparately(long itemId, ArrayList<DeferredRequest<Item>> waiting) {
+            Request<Item> single = get(itemId);
+
+            for (DeferredRequest<Item> request : waiting) {
+                request.withSessionSource(single).follow(single);
+            }
+        }
+    }
+
+    /**
+     * The time window during which requests for single items are collected
+     * into a batch.
+     */
+    private static final long BATCH_WINDOW_MILLIS = 50L;
+
+    /**
+     * The max number of items fetched with one batch request.
+     */
+    private static final int BATCH_MAX_SIZE = 100;
+
+    /**
+     * The open batches, grouped by application id.
+     */
+    private final LinkedHashMap<Long, ItemBatch> batches = new LinkedHashMap<Long, ItemBatch>();
+
+    private ScheduledExecutorService batchScheduler;
+
     /**
      * Requests the API to create a new item
      * 
@@ -259,6 +670,49 @@ public class ItemProvider extends VolleyProvider {
         return get(filter, Item.class);
     }
 
+    /**
+     * Fetches the single item with the given id from the given application.
+     * Requests for items in the same application, made within a short time
+     * window, are coalesced into one filter request. This is considerably
+     * cheaper than fetching, say, all related items of a relationship field one
+     * by one.
+     * 
+     * @param applicationId
+     *        The id of the application the item belongs to.
+     * @param itemId
+     *        The id of the item to fetch.
+     * @return A ticket which the caller can use to identify this request with.
+     */
+    public Request<Item> get(long applicationId, long itemId) {
+        validateClient();
+
+        ItemBatch fullBatch = null;
+        DeferredRequest<Item> request;
+
+        synchronized (batches) {
+            ItemBatch batch = batches.get(applicationId);
+
+            if (batch == null) {
+                batch = new ItemBatch(applicationId);
+                batches.put(applicationId, batch);
+                getBatchScheduler().schedule(batch, BATCH_WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+            }
+
+            request = batch.add(itemId);
+
+            if (batch.size() >= BATCH_MAX_SIZE) {
+                batches.remove(applicationId);
+                fullBatch = batch;
+            }
+        }
+
+        if (fullBatch != null) {
+            fullBatch.send();
+        }
+
+        return request;
+    }
+
     /**
      * Requests the API to update an item with new values.
      * 
@@ -274,4 +728,12 @@ public class ItemProvider extends VolleyProvider {
         return put(filter, data, Item.PushResult.class);
     }
 
+    private ScheduledExecutorService getBatchScheduler() {
+        if (batchScheduler == null) {
+            batchScheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("podio-item-batch"));
+        }
+
+        return batchScheduler;
+    }
+
 }
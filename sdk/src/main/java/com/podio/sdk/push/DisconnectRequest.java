@@ -20,12 +20,12 @@ import java.util.concurrent.Callable;
 
 class DisconnectRequest extends PushRequest<Void> {
 
-    DisconnectRequest(final Transport transport) {
+    DisconnectRequest(final PushSession session) {
         super(new Callable<Void>() {
 
             @Override
             public Void call() throws Exception {
-                disconnect(transport);
+                session.disconnectIfIdle();
                 return null;
             }
 
@@ -32,10 +32,12 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.google.gson.JsonSyntaxException;
 import com.podio.sdk.QueueClient;
+import com.podio.sdk.Request;
 import com.podio.sdk.Request.ErrorListener;
 import com.podio.sdk.Request.ResultListener;
 import com.podio.sdk.domain.push.Event;
 import com.podio.sdk.internal.CallbackManager;
+import com.podio.sdk.internal.DeferredRequest;
 import com.podio.sdk.internal.Utils;
 
 /**
@@ -44,19 +46,27 @@ import com.podio.sdk.internal.Utils;
 public class FayePushClient extends QueueClient implements PushClient {
 
     /**
-     * The list of active subscriptions, grouped by channel.
+     * The list of active subscriptions, grouped by channel. Callbacks may run
+     * on any thread, so this map, its listener lists and the subscribe
+     * requests are only touched while holding the lock on this map.
      */
     private final HashMap<String, ArrayList<EventListener>> subscriptions;
 
+    /**
+     * The subscribe requests of the active subscriptions, by channel.
+     */
+    private final HashMap<String, Request<Void>> subscribeRequests;
+
     /**
      * Manages the external error listeners.
      */
     private final CallbackManager<Void> callbackManager;
 
     /**
-     * The transport layer to be used by this push implementation.
+     * The Bayeux session of this push client, sent over the transport layer
+     * given at construction.
      */
-    private final Transport transport;
+    private final PushSession session;
 
     /**
      * Initializes the push client to its default state.
@@ -70,24 +80,41 @@ public class FayePushClient extends QueueClient implements PushClient {
 
         this.callbackManager = new CallbackManager<Void>();
         this.subscriptions = new HashMap<String, ArrayList<EventListener>>();
-        this.transport = transport;
-
-        // The internal error listener channel between the push client and the
-        // transport layer. It's up to this implementation to decide what is
-        // facing the caller and what is not.
-        this.transport.setErrorListener(new ErrorListener() {
+        this.subscribeRequests = new HashMap<String, Request<Void>>();
+        this.session = new PushSession(transport, new PushSession.Listener() {
 
             @Override
-            public boolean onErrorOccured(Throwable cause) {
-                // Shut down everything and clear any subscriptions.
-                if (PushRequest.getState() != PushRequest.State.closed) {
-                    Transport transport = FayePushClient.this.transport;
-                    execute(new DisconnectRequest(transport));
+            public void onSessionLost(Throwable cause) {
+                // Clear any subscriptions and tell the world.
+                synchronized (subscriptions) {
                     subscriptions.clear();
+                    subscribeRequests.clear();
                 }
 
-                // Tell the world.
                 callbackManager.deliverErrorOnMainThread(cause);
+            }
+
+            @Override
+            public void onSubscriptionLost(String channel, Throwable cause) {
+                synchronized (subscriptions) {
+                    subscriptions.remove(channel);
+                    subscribeRequests.remove(channel);
+                }
+
+                callbackManager.deliverErrorOnMainThread(cause);
+            }
+
+        });
+
+        // The internal error listener channel between the push client and the
+        // transport layer. It's up to this implementation to decide what is
+        // facing the caller and what is not. Failures are recovered from by
+        // the session, the caller is only told if it gives up.
+        transport.setErrorListener(new ErrorListener() {
+
+            @Override
+            public boolean onErrorOccured(Throwable cause) {
+                session.recover(cause);
                 return true;
             }
 
@@ -96,17 +123,19 @@ public class FayePushClient extends QueueClient implements PushClient {
         // The internal event listener channel between the push client and the
         // transport layer. This implementation is responsible for parsing the
         // provided json and call appropriate push event listeners.
-        this.transport.setEventListener(new ResultListener<String>() {
+        transport.setEventListener(new ResultListener<String>() {
 
             @Override
             public boolean onRequestPerformed(String json) {
                 // This one should be running on the main thread.
 
-                // Reconnect if needed.
-                if (PushRequest.getState() != PushRequest.State.closed) {
-                    Transport transport = FayePushClient.this.transport;
-                    ConnectRequest reconnectRequest = new ConnectRequest(transport);
-                    execute(reconnectRequest);
+                // Reconnect if needed. Only the one claiming the reconnect
+                // may send it, which keeps a disconnected session from being
+                // revived and events from causing duplicate reconnects. The
+                // session picks the reply to the connect message, and any
+                // advice in it, from the json without blocking.
+                if (session.compareAndSetState(PushSession.State.connected, PushSession.State.reconnecting)) {
+                    session.reconnect(json);
                 }
 
                 // Parse the delivered json events.
@@ -128,57 +157,108 @@ public class FayePushClient extends QueueClient implements PushClient {
      * Subscribes to the given push channel in the Podio infrastructure. If
      * there already is an existing subscription, the given listener will simply
      * be added to the list of event listeners and the original request will be
-     * returned. Note that this request may be null by now as this
-     * implementation only keeps a weak reference to it. The caller must
-     * therefore check for null pointers.
+     * returned. Subscriptions made within a short time window are sent to the
+     * API as one single message array, but each channel gets its own request,
+     * which fails if the API refused that particular subscription.
      */
     @Override
-    public void subscribe(String channel, String signature, String timestamp, EventListener listener) {
-        if (subscriptions.containsKey(channel)) {
-            ArrayList<EventListener> listeners = subscriptions.get(channel);
-            listeners.add(listener);
-        } else {
+    public Request<Void> subscribe(final String channel, String signature, String timestamp, EventListener listener) {
+        final Request<Void> request;
+
+        // The session never calls back into this client while holding its
+        // own lock, so it's safe to talk to it from within this one.
+        synchronized (subscriptions) {
+            if (subscriptions.containsKey(channel)) {
+                ArrayList<EventListener> listeners = subscriptions.get(channel);
+                listeners.add(listener);
+                return subscribeRequests.get(channel);
+            }
+
             ArrayList<EventListener> listeners = new ArrayList<EventListener>();
             listeners.add(listener);
             subscriptions.put(channel, listeners);
-            execute(new SubscribeRequest(channel, signature, timestamp, transport));
+
+            request = session.subscribe(channel, signature, timestamp);
+            subscribeRequests.put(channel, request);
         }
+
+        request.withErrorListener(new ErrorListener() {
+
+            @Override
+            public boolean onErrorOccured(Throwable cause) {
+                // Forget the refused subscription, unless it has been
+                // replaced by a new one already.
+                synchronized (subscriptions) {
+                    if (subscribeRequests.get(channel) == request) {
+                        subscribeRequests.remove(channel);
+                        subscriptions.remove(channel);
+                    }
+                }
+
+                return false;
+            }
+
+        });
+
+        return request;
     }
 
     /**
      * Removes the given listener from the stated push channel. If {@code null}
      * is provided as listener, then all listeners will be removed. If there are
      * no more listeners listening for events at the stated channel, a
-     * termination request will be sent to the Podio API.
+     * termination request will be sent to the Podio API, batched just like
+     * subscriptions.
      */
     @Override
-    public void unsubscribe(String channel, EventListener listener) {
-        if (listener == null) {
-            // Remove all subscriptions for the given channel.
-            if (subscriptions.containsKey(channel)) {
-                subscriptions.remove(channel);
-                execute(new UnsubscribeRequest(channel, transport));
-            }
-        } else {
-            // Remove the given listener for the given channel.
-            if (subscriptions.containsKey(channel)) {
-                ArrayList<EventListener> listeners = subscriptions.get(channel);
-
-                if (listeners != null) {
-                    listeners.remove(listener);
-
-                    // If no more listener, then also unsubscribe at API level.
-                    if (listeners.size() == 0) {
-                        subscriptions.remove(channel);
-                        execute(new UnsubscribeRequest(channel, transport));
+    public Request<Void> unsubscribe(String channel, EventListener listener) {
+        Request<Void> request = null;
+        boolean doDisconnect;
+
+        synchronized (subscriptions) {
+            if (listener == null) {
+                // Remove all subscriptions for the given channel.
+                if (subscriptions.containsKey(channel)) {
+                    subscriptions.remove(channel);
+                    subscribeRequests.remove(channel);
+                    request = session.unsubscribe(channel);
+                }
+            } else {
+                // Remove the given listener for the given channel.
+                if (subscriptions.containsKey(channel)) {
+                    ArrayList<EventListener> listeners = subscriptions.get(channel);
+
+                    if (listeners != null) {
+                        listeners.remove(listener);
+
+                        // If no more listener, then also unsubscribe at API
+                        // level.
+                        if (listeners.size() == 0) {
+                            subscriptions.remove(channel);
+                            subscribeRequests.remove(channel);
+                            request = session.unsubscribe(channel);
+                        }
                     }
                 }
             }
+
+            doDisconnect = subscriptions.isEmpty();
+        }
+
+        if (doDisconnect) {
+            // The session checks again once the request is run, as a new
+            // subscription may have been made by then.
+            execute(new DisconnectRequest(session));
         }
 
-        if (subscriptions.isEmpty()) {
-            execute(new DisconnectRequest(transport));
+        if (request == null) {
+            // Nothing to tell the API.
+            DeferredRequest<Void> done = new DeferredRequest<Void>();
+            done.deliverResult(null);
+            request = done;
         }
+
+        return request;
     }
 
     @Override
@@ -277,7 +357,15 @@ public class FayePushClient extends QueueClient implements PushClient {
             Event[] eventsArray = new Event[eventsList.size()];
             eventsList.toArray(eventsArray);
 
-            ArrayList<EventListener> listeners = subscriptions.get(key);
+            // Copy the listeners, so they can be called without holding the
+            // lock, and even (un)subscribe from within their callbacks.
+            ArrayList<EventListener> listeners = null;
+
+            synchronized (subscriptions) {
+                if (subscriptions.containsKey(key)) {
+                    listeners = new ArrayList<EventListener>(subscriptions.get(key));
+                }
+            }
 
             if (listeners != null) {
                 for (EventListener listener : listeners) {
@@ -21,6 +21,7 @@
  */
 package com.podio.sdk.push;
 
+import com.podio.sdk.Request;
 import com.podio.sdk.Request.ErrorListener;
 import com.podio.sdk.domain.push.Event;
 
@@ -34,9 +35,9 @@ public interface PushClient {
 
     public void publish(String channel, String signature, String timestamp, Object data);
 
-    public void subscribe(String channel, String signature, String timestamp, EventListener eventListener);
+    public Request<Void> subscribe(String channel, String signature, String timestamp, EventListener eventListener);
 
-    public void unsubscribe(String channel, EventListener listener);
+    public Request<Void> unsubscribe(String channel, EventListener listener);
 
     public PushClient addErrorListener(ErrorListener errorListener);
 
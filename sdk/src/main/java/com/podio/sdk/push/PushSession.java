@@ -0,0 +1,1050 @@
+/*
+ *  Copyright (C) 2014 Copyright Citrix Systems, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ *  this software and associated documentation files (the "Software"), to deal in 
+ *  the Software without restriction, including without limitation the rights to 
+ *  use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+ *  of the Software, and to permit persons to whom the Software is furnished to 
+ *  do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all 
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *  SOFTWARE.
+ */
+
+package com.podio.sdk.push;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Random;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.podio.sdk.Request;
+import com.podio.sdk.Request.ErrorListener;
+import com.podio.sdk.Request.ResultListener;
+import com.podio.sdk.internal.DaemonThreadFactory;
+import com.podio.sdk.internal.DeferredRequest;
+import com.podio.sdk.internal.Utils;
+
+/**
+ * The state of one Bayeux session, as held by one push client. None of the
+ * operations block: messages are handed to the transport and the replies are
+ * acted upon as they arrive, on whatever thread the transport delivers them.
+ * Operations requested while the handshake is in progress are queued and
+ * sent, without waiting for each other's replies, once it has succeeded. All
+ * state transitions are atomic.
+ * <p>
+ * When the transport fails the session starts over with a new handshake,
+ * after a delay that grows exponentially with each consecutive failure and
+ * is randomized, so that clients losing the connection at the same time
+ * don't come back at the same time. The active subscriptions are made again
+ * once the new handshake has succeeded. The session only gives up if the
+ * server advises it not to reconnect.
+ */
+final class PushSession {
+
+    /**
+     * Is told about what the session can't recover from by itself. It's
+     * called on the thread delivering the transport callbacks, which is the
+     * main thread.
+     */
+    static interface Listener {
+
+        /**
+         * The session was closed by the server, or it was advised not to
+         * reconnect after a failure. All subscriptions are gone.
+         */
+        void onSessionLost(Throwable cause);
+
+        /**
+         * The given channel couldn't be subscribed to again after a new
+         * handshake.
+         */
+        void onSubscriptionLost(String channel, Throwable cause);
+
+    }
+
+    static enum State {
+        /**
+         * No handshake has been made yet.
+         */
+        unknown,
+
+        /**
+         * A handshake is in progress.
+         */
+        handshaking,
+
+        /**
+         * A connect message has been sent and the server holds on to it until
+         * there are events to deliver or it times out.
+         */
+        connected,
+
+        /**
+         * The server answered the connect message and a new one is due. Only
+         * the one who moved the session to this state may send it.
+         */
+        reconnecting,
+
+        /**
+         * The transport failed and a new handshake is scheduled.
+         */
+        waiting,
+
+        /**
+         * The session has been disconnected, or the handshake failed.
+         */
+        closed
+    }
+
+    /**
+     * A subscription or an unsubscription waiting to be sent.
+     */
+    private static final class BatchEntry {
+        private final String channel;
+        private final String signature;
+        private final String timestamp;
+        private final boolean isSubscribe;
+        private final DeferredRequest<Void> request;
+
+        private BatchEntry(String channel, String signature, String timestamp, boolean isSubscribe) {
+            this.channel = channel;
+            this.signature = signature;
+            this.timestamp = timestamp;
+            this.isSubscribe = isSubscribe;
+            this.request = new DeferredRequest<Void>();
+        }
+    }
+
+    /**
+     * The max time to wait for the reply to a meta message.
+     */
+    private static final int META_TIMEOUT_MILLIS = 15000;
+
+    /**
+     * The time window within which subscriptions and unsubscriptions are
+     * collected into one message array.
+     */
+    private static final long BATCH_WINDOW_MILLIS = 50L;
+
+    /**
+     * The delay before reconnecting after the first failure. It's doubled
+     * for each consecutive failure.
+     */
+    private static final long RECONNECT_BASE_DELAY_MILLIS = 1000L;
+
+    /**
+     * The max delay before reconnecting after a failure.
+     */
+    private static final long RECONNECT_MAX_DELAY_MILLIS = 120000L;
+
+    private static final class ConnectData {
+        @SuppressWarnings("unused")
+        private final String channel;
+
+        @SuppressWarnings("unused")
+        private final String clientId;
+
+        @SuppressWarnings("unused")
+        private final String connectionType;
+
+        private ConnectData(String clientId) {
+            this.channel = "/meta/connect";
+            this.clientId = clientId;
+            this.connectionType = "long-polling";
+        }
+    }
+
+    private static final class DisconnectData {
+        @SuppressWarnings("unused")
+        private final String channel;
+
+        @SuppressWarnings("unused")
+        private final String clientId;
+
+        private DisconnectData(String clientId) {
+            this.channel = "/meta/disconnect";
+            this.clientId = clientId;
+        }
+    }
+
+    private static final class ExtData {
+        @SuppressWarnings("unused")
+        private final String private_pub_signature;
+
+        @SuppressWarnings("unused")
+        private final String private_pub_timestamp;
+
+        ExtData(String signature, String timestamp) {
+            this.private_pub_signature = signature;
+            this.private_pub_timestamp = timestamp;
+        }
+    }
+
+    private static final class HandshakeData {
+        @SuppressWarnings("unused")
+        private final String channel;
+
+        @SuppressWarnings("unused")
+        private final String version;
+
+        @SuppressWarnings("unused")
+        private final String[] supportedConnectionTypes;
+
+        private HandshakeData() {
+            this.channel = "/meta/handshake";
+            this.version = "1.0";
+            this.supportedConnectionTypes = new String[] { "long-polling" };
+        }
+    }
+
+    private static final class SubscribeData {
+        @SuppressWarnings("unused")
+        private final String channel;
+
+        @SuppressWarnings("unused")
+        private final String clientId;
+
+        @SuppressWarnings("unused")
+        private final String subscription;
+
+        @SuppressWarnings("unused")
+        private final ExtData ext;
+
+        private SubscribeData(String clientId, String subscription, String signature, String timestamp) {
+            this.channel = "/meta/subscribe";
+            this.clientId = clientId;
+            this.subscription = subscription;
+            this.ext = new ExtData(signature, timestamp);
+        }
+    }
+
+    private static final class UnsubscribeData {
+        @SuppressWarnings("unused")
+        private final String channel;
+
+        @SuppressWarnings("unused")
+        private final String clientId;
+
+        @SuppressWarnings("unused")
+        private final String subscription;
+
+        private UnsubscribeData(String clientId, String subscription) {
+            this.channel = "/meta/unsubscribe";
+            this.clientId = clientId;
+            this.subscription = subscription;
+        }
+    }
+
+    private final Transport transport;
+    private final Listener listener;
+
+    /**
+     * The subscriptions and unsubscriptions waiting to be sent.
+     */
+    private final ArrayList<BatchEntry> batch;
+
+    /**
+     * The latest subscription to each active channel, sent or not, by
+     * channel.
+     */
+    private final LinkedHashMap<String, BatchEntry> subscriptions;
+
+    private final Random random;
+
+    private ScheduledExecutorService scheduler;
+    private boolean isFlushScheduled;
+    private int failureCount;
+
+    private State state;
+    private Status status;
+    private Status.Advice advice;
+
+    PushSession(Transport transport, Listener listener) {
+        this.transport = transport;
+        this.listener = listener;
+        this.batch = new ArrayList<BatchEntry>();
+        this.subscriptions = new LinkedHashMap<String, BatchEntry>();
+        this.random = new Random();
+        this.isFlushScheduled = false;
+        this.failureCount = 0;
+        this.state = State.unknown;
+        this.status = new Status();
+        this.advice = null;
+    }
+
+    /**
+     * Atomically moves the session to the given state, if it's in the
+     * expected state.
+     * 
+     * @return Boolean true if the transition was made, false otherwise.
+     */
+    synchronized boolean compareAndSetState(State expected, State state) {
+        if (this.state != expected) {
+            return false;
+        }
+
+        this.state = state;
+        return true;
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Sends the connect message that is due after the server answered the
+     * previous one, or makes a new handshake if the server advised so. The
+     * advised interval is waited out first, or a backoff delay if the server
+     * didn't accept the previous connect message. Nothing is sent unless the
+     * session has been moved to the {@link State#reconnecting} state, which
+     * makes sure a disconnected session stays disconnected and only one
+     * connect message is sent per answer.
+     *
+     * @param json
+     *        The messages delivered by the server, which may or may not
+     *        contain the reply to the previous connect message.
+     */
+    void reconnect(String json) {
+        Status reply = Utils.notEmpty(json) ? findStatus(json) : null;
+        boolean isFailure = reply != null && "/meta/connect".equals(reply.channel()) && !reply.isSuccess();
+        Throwable cause = null;
+        boolean doShakeHands;
+        long delay;
+
+        synchronized (this) {
+            if (reply != null) {
+                storeStatus(reply);
+            }
+
+            if (state != State.reconnecting) {
+                return;
+            }
+
+            Status.Approach approach = advice != null ? advice.reconnectApproach() : Status.Approach.unknown;
+            doShakeHands = approach == Status.Approach.handshake;
+
+            if (approach == Status.Approach.none) {
+                cause = new IllegalStateException("The server advised not to reconnect.");
+                delay = 0L;
+            } else if (isFailure) {
+                delay = getBackoffDelay();
+            } else {
+                failureCount = 0;
+                delay = Math.max(0, advice != null ? advice.reconnectInterval() : 0);
+            }
+
+            if (cause == null && doShakeHands) {
+                state = State.waiting;
+            }
+        }
+
+        if (cause != null) {
+            lose(cause);
+            return;
+        }
+
+        Runnable next = doShakeHands ? new Runnable() {
+
+            @Override
+            public void run() {
+                resume();
+            }
+
+        } : new Runnable() {
+
+            @Override
+            public void run() {
+                if (compareAndSetState(State.reconnecting, State.connected)) {
+                    sendConnect();
+                }
+            }
+
+        };
+
+        if (delay > 0L) {
+            schedule(next, delay);
+        } else {
+            next.run();
+        }
+    }
+
+    /**
+     * Schedules a new handshake after a transport failure, unless the server
+     * has advised not to reconnect, in which case the session is closed and
+     * the listener told so. Starting over is the only option the transport
+     * layer leaves, since it can't tell which message failed. Failures
+     * reported while a new handshake is already scheduled are ignored.
+     */
+    void recover(Throwable cause) {
+        boolean doGiveUp;
+        long delay = 0L;
+
+        synchronized (this) {
+            if (state == State.unknown || state == State.closed || state == State.waiting) {
+                return;
+            }
+
+            doGiveUp = advice != null && advice.reconnectApproach() == Status.Approach.none;
+
+            if (!doGiveUp) {
+                state = State.waiting;
+                delay = getBackoffDelay();
+            }
+        }
+
+        if (doGiveUp) {
+            lose(cause);
+            return;
+        }
+
+        schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                resume();
+            }
+
+        }, delay);
+    }
+
+    /**
+     * Ends the session, unless there are active subscriptions. The check is
+     * made atomically with the state change, so a disconnect requested after
+     * the last unsubscription can't undo a subscription made meanwhile. The
+     * disconnect message is only sent once, no matter how many times this
+     * method is called, and the transport is closed once it has been
+     * answered.
+     */
+    void disconnectIfIdle() {
+        State previous;
+        String clientId;
+        ArrayList<BatchEntry> entries;
+
+        synchronized (this) {
+            if (!subscriptions.isEmpty()) {
+                return;
+            }
+
+            previous = state;
+            clientId = status.clientId();
+            state = State.closed;
+            failureCount = 0;
+            entries = new ArrayList<BatchEntry>(batch);
+            batch.clear();
+            subscriptions.clear();
+            stopScheduler();
+        }
+
+        // Unsent unsubscriptions are fulfilled by the disconnect itself,
+        // while unsent subscriptions never will be.
+        for (BatchEntry entry : entries) {
+            if (entry.isSubscribe) {
+                entry.request.deliverError(new IllegalStateException("The session was closed."));
+            } else {
+                entry.request.deliverResult(null);
+            }
+        }
+
+        if (previous == State.closed) {
+            return;
+        }
+
+        if (previous != State.connected && previous != State.reconnecting) {
+            // Nothing to disconnect from, or a new handshake was due anyway.
+            transport.close();
+            return;
+        }
+
+        transport.disconnect(new DisconnectData(clientId), META_TIMEOUT_MILLIS)
+                .withResultListener(new ResultListener<String>() {
+
+                    @Override
+                    public boolean onRequestPerformed(String json) {
+                        parseStatus(json);
+                        closeTransportIfClosed();
+                        return true;
+                    }
+
+                })
+                .withErrorListener(new ErrorListener() {
+
+                    @Override
+                    public boolean onErrorOccured(Throwable cause) {
+                        // The transport has reported the error already.
+                        closeTransportIfClosed();
+                        return true;
+                    }
+
+                });
+    }
+
+    /**
+     * Subscribes to the given channel, making a handshake and connecting the
+     * session first if needed. The subscription is sent together with any
+     * other subscriptions and unsubscriptions made within a short time
+     * window, as one single message array.
+     * 
+     * @return A request that completes when the server has confirmed the
+     *         subscription, or fails if it refused it. If the transport
+     *         fails meanwhile, the subscription is sent again once the
+     *         session has recovered.
+     */
+    Request<Void> subscribe(String channel, String signature, String timestamp) {
+        BatchEntry entry = new BatchEntry(channel, signature, timestamp, true);
+        boolean doShakeHands = false;
+
+        synchronized (this) {
+            addToBatch(entry);
+            subscriptions.put(channel, entry);
+
+            if (state == State.unknown || state == State.closed) {
+                state = State.handshaking;
+                doShakeHands = true;
+            }
+        }
+
+        track(entry, false);
+
+        if (doShakeHands) {
+            shakeHands();
+        }
+
+        return entry.request;
+    }
+
+    /**
+     * Unsubscribes from the given channel, if the session is connected (or
+     * about to be). The unsubscription is batched just like subscriptions.
+     * 
+     * @return A request that completes when the server has confirmed the
+     *         unsubscription, or fails if it refused it.
+     */
+    Request<Void> unsubscribe(String channel) {
+        BatchEntry entry = new BatchEntry(channel, null, null, false);
+
+        synchronized (this) {
+            subscriptions.remove(channel);
+
+            if (state == State.unknown || state == State.closed) {
+                // There is nothing to unsubscribe from.
+                entry.request.deliverResult(null);
+            } else {
+                addToBatch(entry);
+            }
+        }
+
+        return entry.request;
+    }
+
+    /**
+     * Adds the given entry to the open batch, opening a new one if needed. A
+     * pending entry for the same channel, but with the opposite intent, is
+     * cancelled out instead.
+     */
+    private synchronized void addToBatch(BatchEntry entry) {
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            BatchEntry pending = batch.get(i);
+
+            if (pending.channel.equals(entry.channel)) {
+                if (pending.isSubscribe != entry.isSubscribe) {
+                    batch.remove(i);
+                    pending.request.deliverResult(null);
+                    entry.request.deliverResult(null);
+                    return;
+                }
+
+                break;
+            }
+        }
+
+        batch.add(entry);
+
+        if (!isFlushScheduled) {
+            isFlushScheduled = true;
+            schedule(new Runnable() {
+
+                @Override
+                public void run() {
+                    flush();
+                }
+
+            }, BATCH_WINDOW_MILLIS);
+        }
+    }
+
+    private void closeTransportIfClosed() {
+        // A new session may have been started meanwhile.
+        if (getState() == State.closed) {
+            transport.close();
+        }
+    }
+
+    /**
+     * Sends the open batch as one message array, if the session is connected.
+     * While a handshake is in progress the batch is kept open, it's flushed
+     * as soon as the session is connected.
+     */
+    private void flush() {
+        final ArrayList<BatchEntry> entries;
+        String clientId;
+
+        synchronized (this) {
+            isFlushScheduled = false;
+
+            if (state != State.connected && state != State.reconnecting) {
+                return;
+            }
+
+            entries = new ArrayList<BatchEntry>(batch);
+            clientId = status.clientId();
+            batch.clear();
+        }
+
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        ArrayList<Object> messages = new ArrayList<Object>(entries.size());
+
+        for (BatchEntry entry : entries) {
+            messages.add(entry.isSubscribe ?
+                    new SubscribeData(clientId, entry.channel, entry.signature, entry.timestamp) :
+                    new UnsubscribeData(clientId, entry.channel));
+        }
+
+        transport.configure(messages, META_TIMEOUT_MILLIS)
+                .withResultListener(new ResultListener<String>() {
+
+                    @Override
+                    public boolean onRequestPerformed(String json) {
+                        parseStatus(json);
+                        settle(entries, json);
+                        return true;
+                    }
+
+                })
+                .withErrorListener(new ErrorListener() {
+
+                    @Override
+                    public boolean onErrorOccured(Throwable cause) {
+                        recover(cause);
+                        requeue(entries, cause);
+                        return true;
+                    }
+
+                });
+    }
+
+    /**
+     * Runs the given task on the scheduler thread once the given delay has
+     * passed. The scheduler is started on demand.
+     */
+    private synchronized void schedule(Runnable task, long delayMillis) {
+        if (scheduler == null) {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+                    new DaemonThreadFactory("podio-push-session"));
+            executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+            scheduler = executor;
+        }
+
+        scheduler.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Drops any scheduled tasks and lets the scheduler thread die, as there
+     * is nothing left to do for a closed session. A task that is running
+     * already is allowed to finish. Must be called while holding the lock.
+     */
+    private void stopScheduler() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+
+        isFlushScheduled = false;
+    }
+
+    /**
+     * Maps the replies of a batch to its entries, by meta channel and
+     * subscription. Entries without a reply are failed.
+     */
+    private void settle(ArrayList<BatchEntry> entries, String json) {
+        JsonElement root = Utils.notEmpty(json) ? new JsonParser().parse(json) : new JsonArray();
+        JsonArray replies;
+
+        if (root.isJsonArray()) {
+            replies = root.getAsJsonArray();
+        } else {
+            replies = new JsonArray();
+            replies.add(root);
+        }
+
+        ArrayList<BatchEntry> unsettled = new ArrayList<BatchEntry>(entries);
+        Gson gson = new Gson();
+
+        for (JsonElement reply : replies) {
+            if (!reply.isJsonObject()) {
+                continue;
+            }
+
+            Status status;
+
+            try {
+                status = gson.fromJson(reply, Status.class);
+            } catch (JsonParseException e) {
+                continue;
+            }
+
+            for (int i = 0; i < unsettled.size(); i++) {
+                BatchEntry entry = unsettled.get(i);
+                String channel = entry.isSubscribe ? "/meta/subscribe" : "/meta/unsubscribe";
+
+                if (channel.equals(status.channel()) && entry.channel.equals(status.subscription())) {
+                    unsettled.remove(i);
+
+                    if (status.isSuccess()) {
+                        entry.request.deliverResult(null);
+                    } else {
+                        entry.request.deliverError(new IllegalStateException("Couldn't " +
+                                (entry.isSubscribe ? "subscribe to " : "unsubscribe from ") +
+                                entry.channel + ": " + status.error()));
+                    }
+
+                    break;
+                }
+            }
+        }
+
+        for (BatchEntry entry : unsettled) {
+            entry.request.deliverError(new IllegalStateException("No reply for " + entry.channel));
+        }
+    }
+
+    /**
+     * Closes the session for good, fails everything waiting to be sent and
+     * tells the listener. Does nothing if the session is closed already.
+     */
+    private void lose(Throwable cause) {
+        ArrayList<BatchEntry> entries;
+
+        synchronized (this) {
+            if (state == State.closed) {
+                return;
+            }
+
+            state = State.closed;
+            failureCount = 0;
+            entries = new ArrayList<BatchEntry>(batch);
+            batch.clear();
+            subscriptions.clear();
+            stopScheduler();
+        }
+
+        transport.close();
+
+        for (BatchEntry entry : entries) {
+            entry.request.deliverError(cause);
+        }
+
+        listener.onSessionLost(cause);
+    }
+
+    /**
+     * Puts the entries of a failed batch back in line, if the session is
+     * about to make a new handshake. Unsubscriptions are fulfilled by the
+     * handshake itself and subscriptions are sent again after it. Otherwise
+     * the entries are failed.
+     */
+    private void requeue(ArrayList<BatchEntry> entries, Throwable cause) {
+        ArrayList<BatchEntry> failed = new ArrayList<BatchEntry>();
+        ArrayList<BatchEntry> done = new ArrayList<BatchEntry>();
+
+        synchronized (this) {
+            for (int i = entries.size() - 1; i >= 0; i--) {
+                BatchEntry entry = entries.get(i);
+
+                if (state != State.waiting) {
+                    failed.add(entry);
+                } else if (entry.isSubscribe && subscriptions.get(entry.channel) == entry) {
+                    batch.add(0, entry);
+                } else {
+                    done.add(entry);
+                }
+            }
+        }
+
+        for (BatchEntry entry : failed) {
+            entry.request.deliverError(cause);
+        }
+
+        for (BatchEntry entry : done) {
+            entry.request.deliverResult(null);
+        }
+    }
+
+    /**
+     * Prepares the batch for a fresh client, as the server knows nothing of
+     * it: pending unsubscriptions are fulfilled already and all active
+     * subscriptions that aren't pending need to be made again.
+     */
+    private void resubscribe() {
+        ArrayList<BatchEntry> done = new ArrayList<BatchEntry>();
+        ArrayList<BatchEntry> renewed = new ArrayList<BatchEntry>();
+
+        synchronized (this) {
+            for (int i = batch.size() - 1; i >= 0; i--) {
+                if (!batch.get(i).isSubscribe) {
+                    done.add(batch.remove(i));
+                }
+            }
+
+            for (BatchEntry active : new ArrayList<BatchEntry>(subscriptions.values())) {
+                if (!batch.contains(active)) {
+                    BatchEntry entry = new BatchEntry(active.channel, active.signature, active.timestamp, true);
+                    subscriptions.put(entry.channel, entry);
+                    batch.add(entry);
+                    renewed.add(entry);
+                }
+            }
+        }
+
+        for (BatchEntry entry : done) {
+            entry.request.deliverResult(null);
+        }
+
+        for (BatchEntry entry : renewed) {
+            track(entry, true);
+        }
+    }
+
+    /**
+     * Forgets the given subscription if it's refused, unless it has been
+     * replaced already. Only the listener knows about renewed subscriptions,
+     * so it's told if one of those is refused.
+     */
+    private void track(final BatchEntry entry, final boolean isRenewal) {
+        entry.request.withErrorListener(new ErrorListener() {
+
+            @Override
+            public boolean onErrorOccured(Throwable cause) {
+                boolean isForgotten;
+
+                synchronized (PushSession.this) {
+                    isForgotten = subscriptions.get(entry.channel) == entry;
+
+                    if (isForgotten) {
+                        subscriptions.remove(entry.channel);
+                    }
+                }
+
+                if (isForgotten && isRenewal) {
+                    listener.onSubscriptionLost(entry.channel, cause);
+                }
+
+                // Let any external listeners know as well.
+                return false;
+            }
+
+        });
+    }
+
+    /**
+     * Calculates the delay before the next reconnect attempt and counts the
+     * failure. The delay doubles with each consecutive failure, up to a max,
+     * and a random half of it is cut off to spread the attempts of clients
+     * failing at the same time. It's never shorter than the interval advised
+     * by the server.
+     */
+    private synchronized long getBackoffDelay() {
+        long delay = Math.min(RECONNECT_MAX_DELAY_MILLIS, RECONNECT_BASE_DELAY_MILLIS << Math.min(failureCount, 16));
+        int interval = advice != null ? advice.reconnectInterval() : -1;
+        failureCount++;
+
+        delay = delay / 2 + (long) (random.nextDouble() * (delay / 2));
+        return Math.max(delay, interval);
+    }
+
+    /**
+     * Makes the new handshake scheduled after a failure, unless the session
+     * has been closed meanwhile.
+     */
+    private void resume() {
+        if (compareAndSetState(State.waiting, State.handshaking)) {
+            shakeHands();
+        }
+    }
+
+    /**
+     * Sends a connect message. The session is expected to be in the connected
+     * state already, so that an answer arriving before this method returns can
+     * be acted upon.
+     */
+    private void sendConnect() {
+        String clientId;
+        int timeout;
+
+        synchronized (this) {
+            clientId = status.clientId();
+            timeout = advice != null ? advice.reconnectTimeout() : -1;
+        }
+
+        // The server holds on to the connect message and replies through the
+        // event listener of the transport. In other words: there isn't a
+        // status reported by this call.
+        transport.connect(new ConnectData(clientId), timeout);
+    }
+
+    /**
+     * Sends a handshake message. Once it's answered the session is connected
+     * and any queued operations are sent, along with the active
+     * subscriptions if this isn't the first handshake.
+     */
+    private void shakeHands() {
+        transport.initialize(new HandshakeData(), META_TIMEOUT_MILLIS)
+                .withResultListener(new ResultListener<String>() {
+
+                    @Override
+                    public boolean onRequestPerformed(String json) {
+                        Status reply = parseStatus(json);
+                        boolean isSuccess = reply.isSuccess();
+                        boolean doRetry;
+
+                        synchronized (PushSession.this) {
+                            // Someone may have closed the session meanwhile.
+                            if (state != State.handshaking) {
+                                return true;
+                            }
+
+                            if (isSuccess) {
+                                state = State.connected;
+                                failureCount = 0;
+
+                                // Advice given to the previous client doesn't
+                                // apply to this one.
+                                if (!reply.hasAdvice()) {
+                                    advice = null;
+                                }
+                            }
+
+                            // A refusal is only temporary if the reply says so.
+                            Status.Approach approach = reply.hasAdvice() ? reply.advice().reconnectApproach() : Status.Approach.unknown;
+                            doRetry = approach == Status.Approach.retry || approach == Status.Approach.handshake;
+                        }
+
+                        if (isSuccess) {
+                            resubscribe();
+                            sendConnect();
+                            flush();
+                        } else if (doRetry) {
+                            recover(new IllegalStateException("The handshake was refused: " + reply.error()));
+                        } else {
+                            // Hostile reception of handshake attempt. Be
+                            // offended and abort.
+                            lose(new IllegalStateException("The handshake was refused."));
+                        }
+
+                        return true;
+                    }
+
+                })
+                .withErrorListener(new ErrorListener() {
+
+                    @Override
+                    public boolean onErrorOccured(Throwable cause) {
+                        // The transport has reported the error already, which
+                        // may have scheduled a new attempt.
+                        recover(cause);
+                        return true;
+                    }
+
+                });
+    }
+
+    /**
+     * Finds the first status object in the given json, which may be a single
+     * message or an array of messages.
+     *
+     * @return The found status, or null if there is none.
+     */
+    private Status findStatus(String json) {
+        // Parse the json string into an object tree.
+        JsonParser jsonParser = new JsonParser();
+        JsonElement jsonElement = jsonParser.parse(json);
+        JsonArray jsonArray;
+
+        // Make a general data structure (a JsonArray) to search for the
+        // first available status object (sometimes the API delivers the
+        // Status object on its own, and sometimes in an array).
+        if (jsonElement.isJsonArray()) {
+            jsonArray = jsonElement.getAsJsonArray();
+        } else {
+            jsonArray = new JsonArray();
+            jsonArray.add(jsonElement);
+        }
+
+        // Now try to find the first available Status JsonObject which
+        // meets our minimum criteria.
+        int size = jsonArray.size();
+
+        for (int i = 0; i < size; i++) {
+            jsonElement = jsonArray.get(i);
+
+            if (jsonElement.isJsonObject()) {
+                JsonObject jsonObject = jsonElement.getAsJsonObject();
+
+                if (jsonObject.has("clientId") && jsonObject.has("channel") && jsonObject.has("successful")) {
+                    return (new Gson()).fromJson(jsonObject, Status.class);
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private Status parseStatus(String json) {
+        Status result;
+
+        if (Utils.isEmpty(json)) {
+            result = new Status(); // Defaults to "unknown error" status.
+        } else {
+            result = findStatus(json);
+        }
+
+        synchronized (this) {
+            if (result == null) {
+                // Nothing recognizable, keep the current status.
+                return status;
+            }
+
+            storeStatus(result);
+            return result;
+        }
+    }
+
+    private synchronized void storeStatus(Status status) {
+        this.status = status;
+
+        if (status.hasAdvice()) {
+            advice = status.advice();
+        }
+    }
+
+}
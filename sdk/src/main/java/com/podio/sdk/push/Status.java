@@ -53,7 +53,7 @@ class Status {
     }
 
     static enum Approach {
-        retry, handshake, unknown
+        retry, handshake, none, unknown
     }
 
     private final String id = null;
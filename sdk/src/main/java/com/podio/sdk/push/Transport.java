@@ -21,20 +21,27 @@
  */
 package com.podio.sdk.push;
 
+import com.podio.sdk.Request;
 import com.podio.sdk.Request.ErrorListener;
 import com.podio.sdk.Request.ResultListener;
 
+/**
+ * The network layer of a push client. None of the methods block: replies to
+ * the meta messages are delivered through the returned requests, while
+ * pushed events (and connect replies) are delivered to the event listener.
+ * Failures are reported to both the returned request and the error listener.
+ */
 interface Transport {
 
-    public String close();
+    public void close();
 
-    public String configure(Object object);
+    public Request<String> configure(Object configureData, int timeoutMillis);
 
-    public String connect(Object connectData, int timeoutMillis);
+    public void connect(Object connectData, int timeoutMillis);
 
-    public String disconnect(Object disconnectData);
+    public Request<String> disconnect(Object disconnectData, int timeoutMillis);
 
-    public String initialize(Object handshakeData);
+    public Request<String> initialize(Object handshakeData, int timeoutMillis);
 
     public void setErrorListener(ErrorListener listener);
 
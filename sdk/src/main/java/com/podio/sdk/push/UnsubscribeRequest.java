@@ -1,34 +0,0 @@
-/*
- * Copyright (C) 2014 Citrix Systems, Inc
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *      http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-package com.podio.sdk.push;
-
-import java.util.concurrent.Callable;
-
-class UnsubscribeRequest extends PushRequest<Void> {
-
-    UnsubscribeRequest(final String channel, final Transport transport) {
-        super(new Callable<Void>() {
-
-            @Override
-            public Void call() throws Exception {
-                unsubscribe(transport, channel);
-                return null;
-            }
-
-        });
-    }
-
-}
@@ -27,17 +27,14 @@ import com.android.volley.AuthFailureError;
 import com.android.volley.DefaultRetryPolicy;
 import com.android.volley.Request;
 import com.android.volley.RequestQueue;
-import com.android.volley.RequestQueue.RequestFilter;
 import com.android.volley.Response.ErrorListener;
 import com.android.volley.Response.Listener;
 import com.android.volley.VolleyError;
-import com.android.volley.toolbox.RequestFuture;
 import com.android.volley.toolbox.StringRequest;
 import com.android.volley.toolbox.Volley;
 import com.google.gson.Gson;
 import com.podio.sdk.internal.CallbackManager;
-
-import java.util.concurrent.ExecutionException;
+import com.podio.sdk.internal.DeferredRequest;
 
 public class VolleyLongPollingTransport implements Transport, Listener<String>, ErrorListener {
     private static RequestQueue metaQueue;
@@ -46,10 +43,6 @@ public class VolleyLongPollingTransport implements Transport, Listener<String>,
     private static class VolleyRequest extends StringRequest {
         private final Object data;
 
-        private VolleyRequest(String url, Object data, RequestFuture<String> future) {
-            this(url, data, future, future);
-        }
-
         private VolleyRequest(String url, Object data, Listener<String> resultListener, ErrorListener errorListener) {
             super(Request.Method.POST, url, resultListener, errorListener);
             setShouldCache(false);
@@ -95,42 +88,34 @@ public class VolleyLongPollingTransport implements Transport, Listener<String>,
     }
 
     @Override
-    public String connect(Object connectData, int timeoutMillis) {
+    public void connect(Object connectData, int timeoutMillis) {
         VolleyRequest request = new VolleyRequest(url, connectData, this, this);
         request.setRetryPolicy(new DefaultRetryPolicy(timeoutMillis, 0, 0.0f));
+        request.setTag(this);
         dataQueue.add(request);
         request.setRequestQueue(dataQueue);
-
-        return null;
     }
 
     @Override
-    public String disconnect(Object disconnectData) {
-        RequestFuture<String> future = RequestFuture.newFuture();
-        VolleyRequest request = new VolleyRequest(url, disconnectData, future);
-        return waitForResult(future, request, metaQueue);
+    public com.podio.sdk.Request<String> disconnect(Object disconnectData, int timeoutMillis) {
+        return send(disconnectData, timeoutMillis);
     }
 
     @Override
-    public String initialize(Object handshakeData) {
+    public com.podio.sdk.Request<String> initialize(Object handshakeData, int timeoutMillis) {
         clearQueue(dataQueue);
-        RequestFuture<String> future = RequestFuture.newFuture();
-        VolleyRequest request = new VolleyRequest(url, handshakeData, future);
-        return waitForResult(future, request, metaQueue);
+        return send(handshakeData, timeoutMillis);
     }
 
     @Override
-    public String close() {
+    public void close() {
         clearQueue(metaQueue);
         clearQueue(dataQueue);
-        return null;
     }
 
     @Override
-    public String configure(Object object) {
-        RequestFuture<String> future = RequestFuture.newFuture();
-        VolleyRequest request = new VolleyRequest(url, object, future);
-        return waitForResult(future, request, metaQueue);
+    public com.podio.sdk.Request<String> configure(Object object, int timeoutMillis) {
+        return send(object, timeoutMillis);
     }
 
     @Override
@@ -145,7 +130,7 @@ public class VolleyLongPollingTransport implements Transport, Listener<String>,
 
     @Override
     public void onErrorResponse(VolleyError error) {
-        deliverError(error.getCause());
+        deliverError(getCause(error));
     }
 
     @Override
@@ -153,31 +138,47 @@ public class VolleyLongPollingTransport implements Transport, Listener<String>,
         callbackManager.deliverResultOnMainThread(json);
     }
 
-    private String waitForResult(RequestFuture<String> future, VolleyRequest request, RequestQueue queue) {
-        queue.add(request);
-        request.setRequestQueue(queue);
-
-        try {
-            String result = future.get();
-            return result;
-        } catch (InterruptedException e) {
-            deliverError(e);
-            return null;
-        } catch (ExecutionException e) {
-            deliverError(e.getCause());
-            return null;
-        }
-    }
+    /**
+     * Sends a meta message without waiting for the reply, which is delivered
+     * through the returned request instead.
+     */
+    private com.podio.sdk.Request<String> send(Object data, int timeoutMillis) {
+        final DeferredRequest<String> result = new DeferredRequest<String>();
 
-    private void clearQueue(RequestQueue queue) {
-        queue.cancelAll(new RequestFilter() {
+        VolleyRequest request = new VolleyRequest(url, data, new Listener<String>() {
 
             @Override
-            public boolean apply(Request<?> request) {
-                return true;
+            public void onResponse(String json) {
+                result.deliverResult(json);
+            }
+
+        }, new ErrorListener() {
+
+            @Override
+            public void onErrorResponse(VolleyError error) {
+                Throwable cause = getCause(error);
+                result.deliverError(cause);
+                deliverError(cause);
             }
 
         });
+
+        request.setRetryPolicy(new DefaultRetryPolicy(timeoutMillis, 0, 0.0f));
+        request.setTag(this);
+        metaQueue.add(request);
+        request.setRequestQueue(metaQueue);
+
+        return result;
+    }
+
+    private void clearQueue(RequestQueue queue) {
+        // The queues are shared by all transports, only cancel our own
+        // requests.
+        queue.cancelAll(this);
+    }
+
+    private Throwable getCause(VolleyError error) {
+        return error.getCause() != null ? error.getCause() : error;
     }
 
     private void deliverError(Throwable cause) {
@@ -0,0 +1,425 @@
+/*
+ *  Copyright (C) 2014 Copyright Citrix Systems, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ *  this software and associated documentation files (the "Software"), to deal in 
+ *  the Software without restriction, including without limitation the rights to 
+ *  use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+ *  of the Software, and to permit persons to whom the Software is furnished to 
+ *  do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all 
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *  SOFTWARE.
+ */
+
+package com.podio.sdk.push;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.Socket;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Locale;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+import android.util.Base64;
+
+/**
+ * A minimal RFC 6455 WebSocket client, supporting what the Faye protocol
+ * needs: unfragmented text messages out, (possibly fragmented) text messages
+ * in, and the ping, pong and close control frames. Reading and writing may
+ * happen on different threads.
+ */
+final class WebSocket {
+    private static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    private static final int OPCODE_CONTINUATION = 0x0;
+    private static final int OPCODE_TEXT = 0x1;
+    private static final int OPCODE_BINARY = 0x2;
+    private static final int OPCODE_CLOSE = 0x8;
+    private static final int OPCODE_PING = 0x9;
+    private static final int OPCODE_PONG = 0xA;
+
+    /**
+     * The largest message this client accepts, guarding against corrupt
+     * length fields.
+     */
+    private static final int MAX_MESSAGE_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * Opens a WebSocket connection to the given URL. Secure connections verify
+     * that the server certificate matches the host name, the same way as
+     * HTTPS connections do.
+     * 
+     * @param url
+     *        The "ws" or "wss" URL to connect to.
+     * @param timeoutMillis
+     *        The max time to wait for the connection and the opening
+     *        handshake.
+     * @param sslSocketFactory
+     *        The factory to create secure connections with, or null to use
+     *        the default one.
+     * @return The open WebSocket.
+     * @throws IOException
+     *         If the connection couldn't be established, the server couldn't
+     *         be verified or it didn't agree to speak the WebSocket protocol.
+     */
+    static WebSocket open(String url, int timeoutMillis, SSLSocketFactory sslSocketFactory) throws IOException {
+        URI uri = URI.create(url);
+        String scheme = uri.getScheme();
+        boolean isSecure = "wss".equalsIgnoreCase(scheme);
+
+        if (!isSecure && !"ws".equalsIgnoreCase(scheme)) {
+            throw new ProtocolException("Not a WebSocket URL: " + url);
+        }
+
+        String host = uri.getHost();
+        int port = uri.getPort() != -1 ? uri.getPort() : isSecure ? 443 : 80;
+        String path = uri.getRawPath() != null && uri.getRawPath().length() > 0 ? uri.getRawPath() : "/";
+
+        if (uri.getRawQuery() != null) {
+            path += "?" + uri.getRawQuery();
+        }
+
+        Socket socket = new Socket();
+
+        try {
+            socket.connect(new InetSocketAddress(host, port), timeoutMillis);
+            socket.setSoTimeout(timeoutMillis);
+            socket.setTcpNoDelay(true);
+
+            if (isSecure) {
+                socket = secure(socket, host, port, sslSocketFactory);
+            }
+
+            WebSocket webSocket = new WebSocket(socket);
+            webSocket.shakeHands(uri.getPort() != -1 ? host + ":" + port : host, path);
+            socket.setSoTimeout(0);
+
+            return webSocket;
+        } catch (IOException e) {
+            closeQuietly(socket);
+            throw e;
+        }
+    }
+
+    /**
+     * Layers TLS on top of the given, connected socket. The host name is
+     * handed to the factory, which enables SNI, and the server certificate is
+     * verified against it once the TLS handshake is done.
+     */
+    private static Socket secure(Socket socket, String host, int port, SSLSocketFactory sslSocketFactory) throws IOException {
+        SSLSocketFactory factory = sslSocketFactory != null ?
+                sslSocketFactory :
+                (SSLSocketFactory) SSLSocketFactory.getDefault();
+
+        SSLSocket sslSocket = (SSLSocket) factory.createSocket(socket, host, port, true);
+
+        try {
+            sslSocket.startHandshake();
+
+            if (!HttpsURLConnection.getDefaultHostnameVerifier().verify(host, sslSocket.getSession())) {
+                throw new SSLPeerUnverifiedException("The server certificate doesn't match " + host);
+            }
+
+            return sslSocket;
+        } catch (IOException e) {
+            closeQuietly(sslSocket);
+            throw e;
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Nothing more to do.
+        }
+    }
+
+    private final Socket socket;
+    private final InputStream input;
+    private final OutputStream output;
+    private final SecureRandom random;
+
+    private volatile boolean isClosed;
+
+    private WebSocket(Socket socket) throws IOException {
+        this.socket = socket;
+        this.input = new BufferedInputStream(socket.getInputStream());
+        this.output = new BufferedOutputStream(socket.getOutputStream());
+        this.random = new SecureRandom();
+        this.isClosed = false;
+    }
+
+    /**
+     * Closes the connection, politely telling the server so first if
+     * possible. Blocked readers are released with an exception.
+     */
+    void close() {
+        if (!isClosed) {
+            isClosed = true;
+
+            try {
+                writeFrame(OPCODE_CLOSE, new byte[0]);
+            } catch (IOException e) {
+                // The connection is going down anyway.
+            }
+
+            closeQuietly(socket);
+        }
+    }
+
+    boolean isClosed() {
+        return isClosed;
+    }
+
+    /**
+     * Blocks until the next text message arrives. Control frames are handled
+     * silently on the way.
+     * 
+     * @return The text message.
+     * @throws EOFException
+     *         If the server closed the connection.
+     * @throws IOException
+     *         If the connection failed.
+     */
+    String read() throws IOException {
+        ByteArrayOutputStream message = null;
+
+        while (true) {
+            int head = readByte();
+            int lengthByte = readByte();
+            boolean isFinal = (head & 0x80) != 0;
+            int opcode = head & 0x0F;
+            boolean isMasked = (lengthByte & 0x80) != 0;
+            long length = lengthByte & 0x7F;
+
+            if (length == 126) {
+                length = (readByte() << 8) | readByte();
+            } else if (length == 127) {
+                length = 0;
+
+                for (int i = 0; i < 8; i++) {
+                    length = (length << 8) | readByte();
+                }
+            }
+
+            if (length < 0 || length > MAX_MESSAGE_SIZE) {
+                throw new ProtocolException("Unsupported frame length: " + length);
+            }
+
+            byte[] mask = null;
+
+            if (isMasked) {
+                mask = new byte[4];
+                readFully(mask);
+            }
+
+            byte[] payload = new byte[(int) length];
+            readFully(payload);
+
+            if (mask != null) {
+                for (int i = 0; i < payload.length; i++) {
+                    payload[i] ^= mask[i & 3];
+                }
+            }
+
+            switch (opcode) {
+            case OPCODE_PING:
+                writeFrame(OPCODE_PONG, payload);
+                break;
+            case OPCODE_PONG:
+                break;
+            case OPCODE_CLOSE:
+                close();
+                throw new EOFException("The server closed the WebSocket.");
+            case OPCODE_TEXT:
+            case OPCODE_BINARY:
+            case OPCODE_CONTINUATION:
+                if (opcode != OPCODE_CONTINUATION) {
+                    message = new ByteArrayOutputStream(payload.length);
+                } else if (message == null) {
+                    throw new ProtocolException("Unexpected continuation frame.");
+                }
+
+                message.write(payload);
+
+                if (message.size() > MAX_MESSAGE_SIZE) {
+                    throw new ProtocolException("Message too large.");
+                }
+
+                if (isFinal) {
+                    return message.toString("UTF-8");
+                }
+
+                break;
+            default:
+                throw new ProtocolException("Unknown opcode: " + opcode);
+            }
+        }
+    }
+
+    /**
+     * Sends the given text as one single message.
+     * 
+     * @param text
+     *        The text to send.
+     * @throws IOException
+     *         If the connection failed.
+     */
+    void send(String text) throws IOException {
+        writeFrame(OPCODE_TEXT, text.getBytes("UTF-8"));
+    }
+
+    private void shakeHands(String host, String path) throws IOException {
+        byte[] nonce = new byte[16];
+        random.nextBytes(nonce);
+        String key = Base64.encodeToString(nonce, Base64.NO_WRAP);
+
+        String request = "GET " + path + " HTTP/1.1\r\n" +
+                "Host: " + host + "\r\n" +
+                "Upgrade: websocket\r\n" +
+                "Connection: Upgrade\r\n" +
+                "Sec-WebSocket-Key: " + key + "\r\n" +
+                "Sec-WebSocket-Version: 13\r\n" +
+                "\r\n";
+
+        output.write(request.getBytes("ISO-8859-1"));
+        output.flush();
+
+        String statusLine = readLine();
+
+        if (!statusLine.startsWith("HTTP/1.1 101")) {
+            throw new ProtocolException("WebSocket upgrade refused: " + statusLine);
+        }
+
+        String accept = null;
+        String line;
+
+        while ((line = readLine()).length() > 0) {
+            int colon = line.indexOf(':');
+
+            if (colon > 0 && "sec-websocket-accept".equals(line.substring(0, colon).trim().toLowerCase(Locale.US))) {
+                accept = line.substring(colon + 1).trim();
+            }
+        }
+
+        if (!getAcceptKey(key).equals(accept)) {
+            throw new ProtocolException("Invalid WebSocket accept key: " + accept);
+        }
+    }
+
+    private String getAcceptKey(String key) throws UnsupportedEncodingException {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            byte[] digest = sha1.digest((key + ACCEPT_GUID).getBytes("ISO-8859-1"));
+            return Base64.encodeToString(digest, Base64.NO_WRAP);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private int readByte() throws IOException {
+        int b = input.read();
+
+        if (b == -1) {
+            throw new EOFException("The WebSocket connection was closed.");
+        }
+
+        return b;
+    }
+
+    private void readFully(byte[] buffer) throws IOException {
+        int offset = 0;
+
+        while (offset < buffer.length) {
+            int count = input.read(buffer, offset, buffer.length - offset);
+
+            if (count == -1) {
+                throw new EOFException("The WebSocket connection was closed.");
+            }
+
+            offset += count;
+        }
+    }
+
+    private String readLine() throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+
+        while ((b = readByte()) != '\n') {
+            if (b != '\r') {
+                line.append((char) b);
+            }
+
+            if (line.length() > 8192) {
+                throw new ProtocolException("Header line too long.");
+            }
+        }
+
+        return line.toString();
+    }
+
+    /**
+     * Writes one final frame. Client frames must always be masked.
+     */
+    private void writeFrame(int opcode, byte[] payload) throws IOException {
+        byte[] mask = new byte[4];
+
+        synchronized (output) {
+            random.nextBytes(mask);
+            output.write(0x80 | opcode);
+
+            int length = payload.length;
+
+            if (length < 126) {
+                output.write(0x80 | length);
+            } else if (length <= 0xFFFF) {
+                output.write(0x80 | 126);
+                output.write(length >>> 8);
+                output.write(length);
+            } else {
+                output.write(0x80 | 127);
+
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    output.write((int) ((long) length >>> shift));
+                }
+            }
+
+            output.write(mask);
+
+            byte[] masked = new byte[length];
+
+            for (int i = 0; i < length; i++) {
+                masked[i] = (byte) (payload[i] ^ mask[i & 3]);
+            }
+
+            output.write(masked);
+            output.flush();
+        }
+    }
+
+}
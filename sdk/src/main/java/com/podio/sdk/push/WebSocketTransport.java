@@ -0,0 +1,761 @@
+/*
+ *  Copyright (C) 2014 Copyright Citrix Systems, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ *  this software and associated documentation files (the "Software"), to deal in 
+ *  the Software without restriction, including without limitation the rights to 
+ *  use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+ *  of the Software, and to permit persons to whom the Software is furnished to 
+ *  do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all 
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *  SOFTWARE.
+ */
+
+package com.podio.sdk.push;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLSocketFactory;
+
+import android.content.Context;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.podio.sdk.Request;
+import com.podio.sdk.Request.ErrorListener;
+import com.podio.sdk.Request.ResultListener;
+import com.podio.sdk.internal.CallbackManager;
+import com.podio.sdk.internal.DaemonThreadFactory;
+import com.podio.sdk.internal.DeferredRequest;
+
+/**
+ * A {@link Transport} implementation speaking the Bayeux "websocket"
+ * connection type. All messages, the handshake included, travel over one
+ * single WebSocket connection and pushed events are delivered as soon as they
+ * arrive, instead of costing a full HTTP round trip per batch of events.
+ * Messages are written in order by a worker thread and replies are matched to
+ * their messages by id, so several meta messages may await their replies at
+ * the same time.
+ * <p>
+ * If the WebSocket can't be opened, if the server doesn't offer the
+ * "websocket" connection type, or if the connection breaks, the messages are
+ * sent through the fallback transport instead for the rest of the session.
+ * The next handshake gives the WebSocket another chance.
+ */
+public class WebSocketTransport implements Transport {
+
+    private static enum Call {
+        configure, disconnect, initialize
+    }
+
+    /**
+     * A meta message, or an array of meta messages, waiting for its replies.
+     */
+    private static final class PendingCall {
+        private final Call call;
+        private final Object data;
+        private final int timeoutMillis;
+        private final DeferredRequest<String> request;
+        private final JsonArray replies;
+
+        /**
+         * The channels of the unanswered messages, by message id.
+         */
+        private final LinkedHashMap<String, String> channels;
+
+        private boolean isArray;
+
+        private PendingCall(Call call, Object data, int timeoutMillis, DeferredRequest<String> request) {
+            this.call = call;
+            this.data = data;
+            this.timeoutMillis = timeoutMillis;
+            this.request = request;
+            this.replies = new JsonArray();
+            this.channels = new LinkedHashMap<String, String>();
+        }
+    }
+
+    private static final String CONNECTION_TYPE = "websocket";
+    private static final String FALLBACK_CONNECTION_TYPE = "long-polling";
+    private static final String CONNECT_CHANNEL = "/meta/connect";
+    private static final String DISCONNECT_CHANNEL = "/meta/disconnect";
+    private static final String HANDSHAKE_CHANNEL = "/meta/handshake";
+
+    private static final int OPEN_TIMEOUT_MILLIS = 10000;
+    private static final int DEFAULT_REPLY_TIMEOUT_MILLIS = 15000;
+
+    /**
+     * The time the server is given to answer a connect message, on top of the
+     * timeout it advised.
+     */
+    private static final int CONNECT_GRACE_MILLIS = 10000;
+
+    private final String url;
+    private final Transport fallback;
+    private final SSLSocketFactory sslSocketFactory;
+    private final CallbackManager<String> callbackManager;
+    /**
+     * The meta messages waiting for their replies, by message id. A message
+     * array is registered once per message.
+     */
+    private final LinkedHashMap<String, PendingCall> pendingCalls;
+    private final ExecutorService writer;
+    private final ThreadFactory readerThreadFactory;
+    private final Gson gson;
+
+    private ScheduledExecutorService timer;
+    private WebSocket webSocket;
+    private boolean isFallbackActive;
+    private int messageCount;
+
+    /**
+     * The connect message that is waiting for its reply, if any. The server
+     * pushes events on its own as long as there is one.
+     */
+    private Object pendingConnectData;
+    private int pendingConnectTimeout;
+    private int connectCount;
+
+    /**
+     * Creates a WebSocket transport that falls back to a
+     * {@link VolleyLongPollingTransport} for the same end point.
+     * 
+     * @param context
+     *        The context to create the long polling transport in.
+     * @param url
+     *        The "http" or "https" URL of the Faye end point.
+     */
+    public WebSocketTransport(Context context, String url) {
+        this(context, url, null);
+    }
+
+    /**
+     * Creates a WebSocket transport that falls back to a
+     * {@link VolleyLongPollingTransport} for the same end point.
+     * 
+     * @param context
+     *        The context to create the long polling transport in.
+     * @param url
+     *        The "http" or "https" URL of the Faye end point.
+     * @param sslSocketFactory
+     *        Optional custom SSL socket factory to open secure WebSockets
+     *        with.
+     */
+    public WebSocketTransport(Context context, String url, SSLSocketFactory sslSocketFactory) {
+        this(url, new VolleyLongPollingTransport(context, url), sslSocketFactory);
+    }
+
+    /**
+     * Creates a WebSocket transport that falls back to the given transport.
+     * 
+     * @param url
+     *        The "http" or "https" URL of the Faye end point. The WebSocket
+     *        URL is derived from it.
+     * @param fallback
+     *        The transport to use when the WebSocket fails, or null to
+     *        report such failures to the error listener instead.
+     */
+    public WebSocketTransport(String url, Transport fallback) {
+        this(url, fallback, null);
+    }
+
+    /**
+     * Creates a WebSocket transport that falls back to the given transport.
+     * 
+     * @param url
+     *        The "http" or "https" URL of the Faye end point. The WebSocket
+     *        URL is derived from it.
+     * @param fallback
+     *        The transport to use when the WebSocket fails, or null to
+     *        report such failures to the error listener instead.
+     * @param sslSocketFactory
+     *        Optional custom SSL socket factory to open secure WebSockets
+     *        with.
+     */
+    public WebSocketTransport(String url, Transport fallback, SSLSocketFactory sslSocketFactory) {
+        this.url = url.replaceFirst("^(?i)http", "ws");
+        this.fallback = fallback;
+        this.sslSocketFactory = sslSocketFactory;
+        this.callbackManager = new CallbackManager<String>();
+        this.pendingCalls = new LinkedHashMap<String, PendingCall>();
+        this.writer = new ThreadPoolExecutor(0, 1, 30L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new DaemonThreadFactory("podio-websocket-writer"));
+        this.readerThreadFactory = new DaemonThreadFactory("podio-websocket-reader");
+        this.gson = new Gson();
+        this.isFallbackActive = false;
+        this.messageCount = 0;
+        this.connectCount = 0;
+    }
+
+    @Override
+    public void close() {
+        final WebSocket socket;
+        ArrayList<PendingCall> calls;
+
+        synchronized (this) {
+            socket = webSocket;
+            webSocket = null;
+            pendingConnectData = null;
+            calls = new ArrayList<PendingCall>(new LinkedHashSet<PendingCall>(pendingCalls.values()));
+            pendingCalls.clear();
+
+            // Nothing is left to time out, the timer is started again on
+            // demand.
+            if (timer != null) {
+                timer.shutdown();
+                timer = null;
+            }
+        }
+
+        for (PendingCall call : calls) {
+            call.request.cancel(false);
+        }
+
+        if (socket != null) {
+            // Closing writes a close frame, which mustn't happen on the
+            // calling (possibly main) thread.
+            writer.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    socket.close();
+                }
+
+            });
+        }
+
+        if (fallback != null) {
+            fallback.close();
+        }
+    }
+
+    @Override
+    public Request<String> configure(Object configureData, int timeoutMillis) {
+        return send(Call.configure, configureData, timeoutMillis);
+    }
+
+    @Override
+    public void connect(final Object connectData, final int timeoutMillis) {
+        writer.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                WebSocket socket;
+                int connectId = 0;
+
+                synchronized (WebSocketTransport.this) {
+                    socket = isFallbackActive ? null : webSocket;
+
+                    if (socket != null) {
+                        if (pendingConnectData != null) {
+                            // The server is still holding on to the previous
+                            // connect message and keeps pushing events until
+                            // it answers it.
+                            return;
+                        }
+
+                        pendingConnectData = connectData;
+                        pendingConnectTimeout = timeoutMillis;
+                        connectId = ++connectCount;
+                    }
+                }
+
+                if (socket == null) {
+                    if (isFallbackActive()) {
+                        fallback.connect(connectData, timeoutMillis);
+                    }
+
+                    return;
+                }
+
+                try {
+                    socket.send(toMessage(connectData).toString());
+                    watchConnect(socket, connectId, Math.max(0, timeoutMillis) + CONNECT_GRACE_MILLIS);
+                } catch (IOException e) {
+                    fallBack(socket, e);
+                }
+            }
+
+        });
+    }
+
+    @Override
+    public Request<String> disconnect(Object disconnectData, int timeoutMillis) {
+        return send(Call.disconnect, disconnectData, timeoutMillis);
+    }
+
+    @Override
+    public Request<String> initialize(final Object handshakeData, final int timeoutMillis) {
+        close();
+
+        final DeferredRequest<String> request = new DeferredRequest<String>();
+
+        writer.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                synchronized (WebSocketTransport.this) {
+                    isFallbackActive = false;
+                }
+
+                WebSocket socket;
+
+                try {
+                    socket = WebSocket.open(url, OPEN_TIMEOUT_MILLIS, sslSocketFactory);
+                } catch (IOException e) {
+                    if (fallBack(null, e)) {
+                        request.follow(fallback.initialize(handshakeData, timeoutMillis));
+                    } else {
+                        request.deliverError(e);
+                    }
+
+                    return;
+                }
+
+                startReading(socket);
+                call(socket, Call.initialize, handshakeData, timeoutMillis, request);
+            }
+
+        });
+
+        return request;
+    }
+
+    @Override
+    public void setErrorListener(ErrorListener listener) {
+        callbackManager.addErrorListener(listener, false, null);
+
+        if (fallback != null) {
+            fallback.setErrorListener(listener);
+        }
+    }
+
+    @Override
+    public void setEventListener(ResultListener<String> listener) {
+        callbackManager.addResultListener(listener, false, null);
+
+        if (fallback != null) {
+            fallback.setEventListener(listener);
+        }
+    }
+
+    /**
+     * Sends a meta message on the writer thread, through the WebSocket or the
+     * fallback transport, whichever is active by then.
+     */
+    private Request<String> send(final Call call, final Object data, final int timeoutMillis) {
+        final DeferredRequest<String> request = new DeferredRequest<String>();
+
+        writer.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                WebSocket socket = getActiveWebSocket();
+
+                if (socket != null) {
+                    call(socket, call, data, timeoutMillis, request);
+                } else if (isFallbackActive()) {
+                    request.follow(resend(call, data, timeoutMillis));
+                } else {
+                    request.deliverError(new IOException("The WebSocket isn't open."));
+                }
+            }
+
+        });
+
+        return request;
+    }
+
+    /**
+     * Writes a meta message, or an array of meta messages, registering it as
+     * waiting for its replies. Called on the writer thread only.
+     */
+    private void call(WebSocket socket, Call call, Object data, int timeoutMillis, DeferredRequest<String> request) {
+        JsonElement message = toMessage(data);
+        JsonArray messages;
+
+        if (message.isJsonArray()) {
+            messages = message.getAsJsonArray();
+        } else {
+            messages = new JsonArray();
+            messages.add(message);
+        }
+
+        PendingCall pendingCall = new PendingCall(call, data,
+                timeoutMillis > 0 ? timeoutMillis : DEFAULT_REPLY_TIMEOUT_MILLIS, request);
+        pendingCall.isArray = message.isJsonArray();
+
+        synchronized (this) {
+            for (JsonElement element : messages) {
+                JsonObject object = element.getAsJsonObject();
+                String id = Integer.toString(++messageCount);
+                object.addProperty("id", id);
+                pendingCalls.put(id, pendingCall);
+                pendingCall.channels.put(id, getString(object, "channel"));
+
+                if (DISCONNECT_CHANNEL.equals(getString(object, "channel"))) {
+                    // The server won't answer the connect message after this
+                    // and may well close the connection.
+                    pendingConnectData = null;
+                }
+            }
+        }
+
+        try {
+            socket.send(message.toString());
+        } catch (IOException e) {
+            fallBack(socket, e);
+            return;
+        }
+
+        watchCall(pendingCall);
+    }
+
+    /**
+     * Sorts the messages of an incoming frame into replies to pending meta
+     * messages and pushed events (including connect replies), which are
+     * delivered to the event listener.
+     */
+    private void dispatch(WebSocket socket, String json) {
+        JsonElement root;
+
+        try {
+            root = new JsonParser().parse(json);
+        } catch (JsonParseException e) {
+            callbackManager.deliverErrorOnMainThread(e);
+            return;
+        }
+
+        JsonArray messages;
+
+        if (root.isJsonArray()) {
+            messages = root.getAsJsonArray();
+        } else {
+            messages = new JsonArray();
+            messages.add(root);
+        }
+
+        JsonArray events = new JsonArray();
+        ArrayList<PendingCall> answered = new ArrayList<PendingCall>();
+        ArrayList<String> replies = new ArrayList<String>();
+        PendingCall refusedCall = null;
+
+        synchronized (this) {
+            for (JsonElement message : messages) {
+                PendingCall pendingCall = message.isJsonObject() ? takePendingCall(message.getAsJsonObject()) : null;
+
+                if (pendingCall != null) {
+                    pendingCall.replies.add(message);
+
+                    if (!pendingCall.channels.isEmpty()) {
+                        // Wait for the rest of the array to be answered.
+                        continue;
+                    }
+                }
+
+                if (pendingCall == null) {
+                    if (message.isJsonObject() && CONNECT_CHANNEL.equals(getString(message.getAsJsonObject(), "channel"))) {
+                        pendingConnectData = null;
+                    }
+
+                    events.add(message);
+                } else if (pendingCall.call == Call.initialize && isWebSocketRefused(message)) {
+                    refusedCall = pendingCall;
+                } else {
+                    answered.add(pendingCall);
+                    replies.add(pendingCall.isArray ? pendingCall.replies.toString() : message.toString());
+                }
+            }
+        }
+
+        for (int i = 0; i < answered.size(); i++) {
+            answered.get(i).request.deliverResult(replies.get(i));
+        }
+
+        if (events.size() > 0) {
+            callbackManager.deliverResultOnMainThread(events.toString());
+        }
+
+        if (refusedCall != null) {
+            // Make the handshake again, through the fallback transport.
+            ProtocolException cause = new ProtocolException("The server doesn't offer the " + CONNECTION_TYPE + " connection type.");
+
+            if (fallBack(socket, cause)) {
+                refusedCall.request.follow(resend(refusedCall.call, refusedCall.data, refusedCall.timeoutMillis));
+            } else {
+                refusedCall.request.deliverError(cause);
+            }
+        }
+    }
+
+    /**
+     * Switches to the fallback transport if the given socket is still the
+     * active one. Meta messages waiting for their replies, and any connect
+     * message, are resent through the fallback transport, as they were lost
+     * with the socket.
+     * 
+     * @return Boolean true if the fallback transport is active, false if there
+     *         is none and the error has been reported instead.
+     */
+    private boolean fallBack(WebSocket socket, Throwable cause) {
+        Object connectData;
+        int connectTimeout;
+        ArrayList<PendingCall> calls;
+
+        synchronized (this) {
+            if (socket != webSocket) {
+                // Old news, this socket has already been replaced or closed.
+                return isFallbackActive;
+            }
+
+            webSocket = null;
+            connectData = pendingConnectData;
+            connectTimeout = pendingConnectTimeout;
+            pendingConnectData = null;
+            calls = new ArrayList<PendingCall>(new LinkedHashSet<PendingCall>(pendingCalls.values()));
+            pendingCalls.clear();
+            isFallbackActive = fallback != null;
+        }
+
+        if (socket != null) {
+            socket.close();
+        }
+
+        if (fallback == null) {
+            for (PendingCall call : calls) {
+                call.request.deliverError(cause);
+            }
+
+            callbackManager.deliverErrorOnMainThread(cause);
+            return false;
+        }
+
+        for (PendingCall call : calls) {
+            call.request.follow(resend(call.call, call.data, call.timeoutMillis));
+        }
+
+        if (connectData != null) {
+            fallback.connect(connectData, connectTimeout);
+        }
+
+        return true;
+    }
+
+    private synchronized WebSocket getActiveWebSocket() {
+        return isFallbackActive ? null : webSocket;
+    }
+
+    private String getString(JsonObject message, String member) {
+        JsonElement value = message.get(member);
+        return value != null && value.isJsonPrimitive() ? value.getAsString() : null;
+    }
+
+    private synchronized boolean isFallbackActive() {
+        return isFallbackActive;
+    }
+
+    /**
+     * States whether the given handshake reply accepts the client but doesn't
+     * offer the WebSocket connection type.
+     */
+    private boolean isWebSocketRefused(JsonElement message) {
+        try {
+            Status status = gson.fromJson(message, Status.class);
+
+            return status != null &&
+                    HANDSHAKE_CHANNEL.equals(status.channel()) &&
+                    status.isSuccess() &&
+                    !status.hasSupportForConnectionType(CONNECTION_TYPE);
+        } catch (JsonParseException e) {
+            return false;
+        }
+    }
+
+    private Request<String> resend(Call call, Object data, int timeoutMillis) {
+        switch (call) {
+        case configure:
+            return fallback.configure(data, timeoutMillis);
+        case disconnect:
+            return fallback.disconnect(data, timeoutMillis);
+        case initialize:
+            return fallback.initialize(data, timeoutMillis);
+        default:
+            throw new IllegalArgumentException("Unknown call: " + call);
+        }
+    }
+
+    private void startReading(final WebSocket socket) {
+        synchronized (this) {
+            webSocket = socket;
+            pendingConnectData = null;
+        }
+
+        Thread reader = readerThreadFactory.newThread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    while (!socket.isClosed()) {
+                        dispatch(socket, socket.read());
+                    }
+                } catch (IOException e) {
+                    fallBack(socket, e);
+                }
+            }
+
+        });
+
+        reader.start();
+    }
+
+    /**
+     * Finds and unregisters the pending meta message the given message is a
+     * reply to, preferably by id, or else by channel.
+     */
+    private PendingCall takePendingCall(JsonObject message) {
+        String id = getString(message, "id");
+
+        if (id == null || !pendingCalls.containsKey(id)) {
+            id = null;
+            String channel = getString(message, "channel");
+
+            if (channel != null && !CONNECT_CHANNEL.equals(channel)) {
+                for (Map.Entry<String, PendingCall> entry : pendingCalls.entrySet()) {
+                    if (channel.equals(entry.getValue().channels.get(entry.getKey()))) {
+                        id = entry.getKey();
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (id == null) {
+            return null;
+        }
+
+        PendingCall pendingCall = pendingCalls.remove(id);
+        pendingCall.channels.remove(id);
+        return pendingCall;
+    }
+
+    /**
+     * Translates the given message to JSON, claiming the WebSocket connection
+     * type where the long polling one is stated.
+     */
+    private JsonElement toMessage(Object data) {
+        JsonElement json = gson.toJsonTree(data);
+
+        if (json.isJsonObject()) {
+            JsonObject message = json.getAsJsonObject();
+
+            if (message.has("connectionType")) {
+                message.addProperty("connectionType", CONNECTION_TYPE);
+            }
+
+            if (message.has("supportedConnectionTypes")) {
+                JsonArray connectionTypes = new JsonArray();
+                connectionTypes.add(new JsonPrimitive(CONNECTION_TYPE));
+                connectionTypes.add(new JsonPrimitive(FALLBACK_CONNECTION_TYPE));
+                message.add("supportedConnectionTypes", connectionTypes);
+            }
+        }
+
+        return json;
+    }
+
+    /**
+     * Runs the given task on the timer thread once the given delay has
+     * passed. The timer is started on demand.
+     */
+    private synchronized void schedule(Runnable task, long delayMillis) {
+        if (timer == null) {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+                    new DaemonThreadFactory("podio-websocket-timer"));
+            executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+            timer = executor;
+        }
+
+        timer.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Fails the given meta message if the server doesn't answer it in time.
+     */
+    private void watchCall(final PendingCall pendingCall) {
+        schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                boolean isUnanswered;
+
+                synchronized (WebSocketTransport.this) {
+                    isUnanswered = !pendingCall.channels.isEmpty() &&
+                            pendingCalls.containsValue(pendingCall);
+
+                    for (String id : pendingCall.channels.keySet()) {
+                        pendingCalls.remove(id);
+                    }
+                }
+
+                if (isUnanswered) {
+                    String channel = pendingCall.channels.values().iterator().next();
+                    SocketTimeoutException cause = new SocketTimeoutException("No reply on " + channel);
+                    pendingCall.request.deliverError(cause);
+                    callbackManager.deliverErrorOnMainThread(cause);
+                }
+            }
+
+        }, pendingCall.timeoutMillis);
+    }
+
+    /**
+     * Gives up on the socket if the server doesn't answer the given connect
+     * message in time.
+     */
+    private void watchConnect(final WebSocket socket, final int connectId, int timeoutMillis) {
+        schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                boolean isUnanswered;
+
+                synchronized (WebSocketTransport.this) {
+                    isUnanswered = socket == webSocket && pendingConnectData != null && connectId == connectCount;
+                }
+
+                if (isUnanswered) {
+                    fallBack(socket, new SocketTimeoutException("No reply on " + CONNECT_CHANNEL));
+                }
+            }
+
+        }, timeoutMillis);
+    }
+
+}
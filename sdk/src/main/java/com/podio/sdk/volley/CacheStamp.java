@@ -0,0 +1,57 @@
+/*
+ *  Copyright (C) 2014 Copyright Citrix Systems, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ *  this software and associated documentation files (the "Software"), to deal in 
+ *  the Software without restriction, including without limitation the rights to 
+ *  use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+ *  of the Software, and to permit persons to whom the Software is furnished to 
+ *  do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all 
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *  SOFTWARE.
+ */
+package com.podio.sdk.volley;
+
+/**
+ * Describes a result in the read-through cache of a {@link VolleyProvider}:
+ * when it was fetched, and the digest of the response body it was parsed
+ * from. The stamp is stored next to the result itself.
+ */
+final class CacheStamp {
+    private final long fetchedAt;
+    private final String digest;
+
+    CacheStamp(long fetchedAt, String digest) {
+        this.fetchedAt = fetchedAt;
+        this.digest = digest;
+    }
+
+    private CacheStamp() {
+        this(0L, null);
+    }
+
+    /**
+     * @return The time the result was fetched, in milliseconds since the
+     *         epoch.
+     */
+    long getFetchedAt() {
+        return fetchedAt;
+    }
+
+    /**
+     * @return The digest of the response body, or null if not known.
+     */
+    String getDigest() {
+        return digest;
+    }
+
+}
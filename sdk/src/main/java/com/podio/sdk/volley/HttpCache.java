@@ -0,0 +1,112 @@
+/*
+ *  Copyright (C) 2014 Copyright Citrix Systems, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ *  this software and associated documentation files (the "Software"), to deal in 
+ *  the Software without restriction, including without limitation the rights to 
+ *  use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+ *  of the Software, and to permit persons to whom the Software is furnished to 
+ *  do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all 
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *  SOFTWARE.
+ */
+package com.podio.sdk.volley;
+
+import java.util.Map;
+
+import android.util.LruCache;
+
+import com.podio.sdk.internal.Utils;
+
+/**
+ * An in-memory cache of parsed HTTP responses, enabling conditional GET
+ * requests. Responses are only kept if the API provided an "ETag" or a
+ * "Last-Modified" header, and they're keyed by the access token, the URL and
+ * the type of the parsed result. Cached content can therefore never be served
+ * to another account (or even another session).
+ */
+final class HttpCache {
+
+    static final class Entry {
+        final String etag;
+        final String lastModified;
+        final Object result;
+        final String digest;
+
+        private Entry(String etag, String lastModified, Object result, String digest) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.result = result;
+            this.digest = digest;
+        }
+    }
+
+    /**
+     * Finds the value of the given header, ignoring the case of the header
+     * name.
+     */
+    private static String getHeader(Map<String, String> headers, String name) {
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                if (name.equalsIgnoreCase(header.getKey())) {
+                    return header.getValue();
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private final LruCache<String, Entry> entries;
+
+    HttpCache(int maxEntries) {
+        this.entries = new LruCache<String, Entry>(maxEntries);
+    }
+
+    void clear() {
+        entries.evictAll();
+    }
+
+    Entry get(String key) {
+        return key != null ? entries.get(key) : null;
+    }
+
+    String getKey(String accessToken, String url, Class<?> classOfResult) {
+        if (Utils.isEmpty(url) || classOfResult == null) {
+            return null;
+        }
+
+        // Never mix up the responses of different sessions.
+        String session = accessToken != null ? accessToken : "";
+        return session + " " + classOfResult.getName() + " " + url;
+    }
+
+    /**
+     * Caches the parsed result of a response, and the digest of its body,
+     * given that the response headers offer means of validating it later on.
+     */
+    void put(String key, Map<String, String> headers, Object result, String digest) {
+        if (key == null) {
+            return;
+        }
+
+        String etag = getHeader(headers, "ETag");
+        String lastModified = getHeader(headers, "Last-Modified");
+
+        if (result != null && (Utils.notEmpty(etag) || Utils.notEmpty(lastModified))) {
+            entries.put(key, new Entry(etag, lastModified, result, digest));
+        } else {
+            entries.remove(key);
+        }
+    }
+
+}
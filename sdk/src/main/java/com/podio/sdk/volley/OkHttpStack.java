@@ -0,0 +1,76 @@
+/*
+ *  Copyright (C) 2014 Copyright Citrix Systems, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ *  this software and associated documentation files (the "Software"), to deal in 
+ *  the Software without restriction, including without limitation the rights to 
+ *  use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+ *  of the Software, and to permit persons to whom the Software is furnished to 
+ *  do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all 
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *  SOFTWARE.
+ */
+package com.podio.sdk.volley;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import javax.net.ssl.SSLSocketFactory;
+
+import com.android.volley.toolbox.HurlStack;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.OkUrlFactory;
+
+/**
+ * A Volley {@link com.android.volley.toolbox.HttpStack} that opens its
+ * connections through OkHttp instead of the platform
+ * {@link HttpURLConnection}. OkHttp brings HTTP/2 (and SPDY) multiplexing, a
+ * shared keep-alive connection pool and transparent gzip to all requests sent
+ * through this stack.
+ * <p>
+ * The OkHttp library is not a mandatory dependency of the SDK. The caller must
+ * include <code>com.squareup.okhttp:okhttp-urlconnection</code> in the app in
+ * order to use this class.
+ * 
+ * @see VolleyClient#setup(android.content.Context, String, String, String,
+ *      String, SSLSocketFactory, com.android.volley.toolbox.HttpStack)
+ */
+public class OkHttpStack extends HurlStack {
+    private final OkUrlFactory urlFactory;
+
+    public OkHttpStack() {
+        this(new OkHttpClient(), null);
+    }
+
+    public OkHttpStack(OkHttpClient client) {
+        this(client, null);
+    }
+
+    /**
+     * @param client
+     *        The OkHttp client to open connections through. Stacks sharing
+     *        the same client will also share its connection pool.
+     * @param sslSocketFactory
+     *        Optional custom SSL socket factory to use in the HTTP requests.
+     */
+    public OkHttpStack(OkHttpClient client, SSLSocketFactory sslSocketFactory) {
+        super(null, sslSocketFactory);
+        this.urlFactory = new OkUrlFactory(client);
+    }
+
+    @Override
+    protected HttpURLConnection createConnection(URL url) throws IOException {
+        return urlFactory.open(url);
+    }
+
+}
@@ -0,0 +1,393 @@
+/*
+ *  Copyright (C) 2014 Copyright Citrix Systems, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ *  this software and associated documentation files (the "Software"), to deal in 
+ *  the Software without restriction, including without limitation the rights to 
+ *  use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+ *  of the Software, and to permit persons to whom the Software is furnished to 
+ *  do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all 
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *  SOFTWARE.
+ */
+
+package com.podio.sdk.volley;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.podio.sdk.Request;
+import com.podio.sdk.internal.CallbackManager;
+
+/**
+ * A {@link Request} implementation for read-through cached GET requests. It
+ * may deliver its result twice: first the cached value, as soon as it's read
+ * from the store, and then the fresh value from the API, but only if it
+ * differs from the cached one. Values are compared by the digests of the
+ * response bodies they were parsed from, which are calculated on the network
+ * worker thread. Errors are only delivered if no result could be delivered in
+ * time.
+ * <p>
+ * The outcomes of the underlying store and network requests may arrive on any
+ * thread. The state of this request is updated while holding its lock, but
+ * the listeners are called without holding it, in the order the outcomes
+ * arrived, so they're free to call back into this request from any thread.
+ * 
+ * @param <T>
+ *        The type of the result.
+ */
+final class ReadThroughRequest<T> implements Request<T> {
+    private final ArrayList<ResultListener<T>> resultListeners;
+    private final ArrayList<ErrorListener> errorListeners;
+    private final CountDownLatch firstDelivery;
+    private final ArrayList<SessionListener> sessionListeners;
+
+    /**
+     * The deliveries waiting to be made, in order. Only one thread at a time
+     * makes them.
+     */
+    private final ArrayDeque<Runnable> deliveries;
+    private boolean isDelivering;
+
+    private Request<T> networkRequest;
+    private String deliveredDigest;
+    private boolean hasResult;
+    private boolean isCancelled;
+    private T result;
+    private Throwable error;
+
+    ReadThroughRequest() {
+        this.resultListeners = new ArrayList<ResultListener<T>>();
+        this.errorListeners = new ArrayList<ErrorListener>();
+        this.firstDelivery = new CountDownLatch(1);
+        this.sessionListeners = new ArrayList<SessionListener>();
+        this.deliveries = new ArrayDeque<Runnable>();
+        this.isDelivering = false;
+    }
+
+    /**
+     * Delivers the cached value. This is expected to happen before any fresh
+     * value is delivered.
+     * 
+     * @param cached
+     *        The value as read from the store.
+     * @param digest
+     *        The digest of the response body the value was parsed from, or
+     *        null if not known.
+     */
+    void deliverCached(T cached, String digest) {
+        synchronized (this) {
+            if (isCancelled || hasResult) {
+                return;
+            }
+
+            setResult(cached, digest);
+        }
+
+        deliverPending();
+    }
+
+    /**
+     * Delivers the fresh value, unless it's equal to the previously delivered
+     * one. Values are compared by the digests of their response bodies, as the
+     * domain objects don't define equality. Values without a known digest are
+     * always delivered.
+     * 
+     * @param fresh
+     *        The value as fetched from the API.
+     * @param digest
+     *        The digest of the response body the value was parsed from, or
+     *        null if not known.
+     * @return Boolean true if the value was delivered, false otherwise.
+     */
+    boolean deliverFresh(T fresh, String digest) {
+        synchronized (this) {
+            if (isCancelled) {
+                return false;
+            }
+
+            if (hasResult && digest != null && digest.equals(deliveredDigest)) {
+                return false;
+            }
+
+            setResult(fresh, digest);
+        }
+
+        deliverPending();
+        return true;
+    }
+
+    /**
+     * Delivers the error that prevented the request from being completed.
+     * 
+     * @param cause
+     *        The cause of the failure.
+     */
+    void deliverError(Throwable cause) {
+        synchronized (this) {
+            if (isCancelled) {
+                return;
+            }
+
+            if (!hasResult) {
+                error = cause;
+            }
+
+            firstDelivery.countDown();
+            enqueueError(cause, errorListeners);
+        }
+
+        deliverPending();
+    }
+
+    /**
+     * States whether a value has been delivered, cached or fresh.
+     */
+    synchronized boolean hasResult() {
+        return hasResult;
+    }
+
+    /**
+     * Attaches the network request, which fetches the fresh value, so that
+     * any session listeners are informed about session changes caused by it.
+     * 
+     * @param request
+     *        The network request.
+     */
+    synchronized void setNetworkRequest(Request<T> request) {
+        networkRequest = request;
+
+        for (SessionListener sessionListener : sessionListeners) {
+            request.withSessionListener(sessionListener);
+        }
+    }
+
+    /**
+     * Stores the given value as the result and enqueues its delivery. Must be
+     * called while holding the lock.
+     */
+    private void setResult(T value, String digest) {
+        result = value;
+        error = null;
+        deliveredDigest = digest;
+        hasResult = true;
+        firstDelivery.countDown();
+        enqueueResult(value, resultListeners);
+    }
+
+    /**
+     * Enqueues the delivery of the given result to the given listeners, as
+     * they are now. Must be called while holding the lock.
+     */
+    private void enqueueResult(final T value, List<ResultListener<T>> listeners) {
+        final CallbackManager<T> callbackManager = new CallbackManager<T>();
+
+        for (ResultListener<T> listener : listeners) {
+            callbackManager.addResultListener(listener, false, null);
+        }
+
+        deliveries.offer(new Runnable() {
+
+            @Override
+            public void run() {
+                callbackManager.deliverResult(value);
+            }
+
+        });
+    }
+
+    /**
+     * Enqueues the delivery of the given error to the given listeners, as
+     * they are now, and on to the global error listeners unless consumed.
+     * Must be called while holding the lock.
+     */
+    private void enqueueError(final Throwable cause, List<ErrorListener> listeners) {
+        final CallbackManager<T> callbackManager = new CallbackManager<T>();
+
+        for (ErrorListener listener : listeners) {
+            callbackManager.addErrorListener(listener, false, null);
+        }
+
+        deliveries.offer(new Runnable() {
+
+            @Override
+            public void run() {
+                callbackManager.deliverError(cause);
+            }
+
+        });
+    }
+
+    /**
+     * Makes the enqueued deliveries without holding the lock, unless another
+     * thread is making them already, in which case that thread will make
+     * these ones too.
+     */
+    private void deliverPending() {
+        synchronized (this) {
+            if (isDelivering) {
+                return;
+            }
+
+            isDelivering = true;
+        }
+
+        boolean isFinished = false;
+
+        try {
+            while (true) {
+                Runnable delivery;
+
+                synchronized (this) {
+                    delivery = deliveries.poll();
+
+                    if (delivery == null) {
+                        isDelivering = false;
+                        isFinished = true;
+                        return;
+                    }
+                }
+
+                delivery.run();
+            }
+        } finally {
+            if (!isFinished) {
+                // A listener threw. Whatever is left is delivered along with
+                // the next outcome.
+                synchronized (this) {
+                    isDelivering = false;
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized boolean cancel(boolean mayInterruptIfRunning) {
+        if (isDone()) {
+            return false;
+        }
+
+        isCancelled = true;
+        firstDelivery.countDown();
+
+        if (networkRequest != null) {
+            networkRequest.cancel(mayInterruptIfRunning);
+        }
+
+        return true;
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        firstDelivery.await();
+        return getOutcome();
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!firstDelivery.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+
+        return getOutcome();
+    }
+
+    private synchronized T getOutcome() throws ExecutionException {
+        if (isCancelled) {
+            throw new CancellationException();
+        }
+
+        if (!hasResult) {
+            throw new ExecutionException(error);
+        }
+
+        return result;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return isCancelled;
+    }
+
+    @Override
+    public boolean isDone() {
+        return firstDelivery.getCount() == 0;
+    }
+
+    @Override
+    public Request<T> withResultListener(ResultListener<T> resultListener) {
+        if (resultListener == null) {
+            return this;
+        }
+
+        synchronized (this) {
+            resultListeners.add(resultListener);
+
+            if (hasResult) {
+                enqueueResult(result, Collections.singletonList(resultListener));
+            }
+        }
+
+        deliverPending();
+        return this;
+    }
+
+    @Override
+    public Request<T> withErrorListener(final ErrorListener errorListener) {
+        if (errorListener == null) {
+            return this;
+        }
+
+        synchronized (this) {
+            errorListeners.add(errorListener);
+
+            if (!hasResult && error != null) {
+                // Only the new listener is told, the error has bubbled
+                // already.
+                final Throwable cause = error;
+
+                deliveries.offer(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        errorListener.onErrorOccured(cause);
+                    }
+
+                });
+            }
+        }
+
+        deliverPending();
+        return this;
+    }
+
+    @Override
+    public synchronized Request<T> withSessionListener(SessionListener sessionListener) {
+        if (sessionListener != null) {
+            sessionListeners.add(sessionListener);
+
+            if (networkRequest != null) {
+                networkRequest.withSessionListener(sessionListener);
+            }
+        }
+
+        return this;
+    }
+
+}
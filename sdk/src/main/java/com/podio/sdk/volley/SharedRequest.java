@@ -0,0 +1,116 @@
+/*
+ *  Copyright (C) 2014 Copyright Citrix Systems, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ *  this software and associated documentation files (the "Software"), to deal in 
+ *  the Software without restriction, including without limitation the rights to 
+ *  use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+ *  of the Software, and to permit persons to whom the Software is furnished to 
+ *  do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all 
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *  SOFTWARE.
+ */
+package com.podio.sdk.volley;
+
+import com.podio.sdk.Request;
+import com.podio.sdk.internal.DeferredRequest;
+
+/**
+ * One GET request on its way to the API, shared by all callers asking for the
+ * same resource meanwhile. Each caller gets a request future of its own,
+ * which can be listened to and cancelled independently of the others. The
+ * network call is only cancelled once all callers have cancelled. Note that
+ * all callers are given the very same parsed result object.
+ * <p>
+ * Volley delivers on the main thread already, so the request futures call
+ * their listeners right away rather than posting them to the main thread
+ * once more.
+ */
+final class SharedRequest<T> {
+
+    /**
+     * The request future of one caller.
+     */
+    final class Caller extends DeferredRequest<T> {
+
+        private Caller() {
+            super(true);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean isCancelled = super.cancel(mayInterruptIfRunning);
+
+            if (isCancelled) {
+                leave();
+            }
+
+            return isCancelled;
+        }
+
+        /**
+         * @see VolleyRequest#getContentDigest()
+         */
+        String getContentDigest() {
+            return request.getContentDigest();
+        }
+
+    }
+
+    private final VolleyRequest<T> request;
+
+    /**
+     * The number of callers that haven't cancelled their request.
+     */
+    private int callerCount;
+
+    SharedRequest(VolleyRequest<T> request) {
+        this.request = request;
+        this.callerCount = 0;
+    }
+
+    /**
+     * Hands out a request future of its own to a new caller.
+     * 
+     * @param doDigestContent
+     *        Whether the caller needs the digest of the response body, see
+     *        {@link VolleyRequest#withContentDigest()}.
+     * @return The request future of the caller, or null if the shared request
+     *         can't be joined, as it has been cancelled or delivered already,
+     *         or the digest is needed but the response is being parsed
+     *         already.
+     */
+    synchronized Request<T> join(boolean doDigestContent) {
+        if (request.isCanceled() || request.isDelivered()) {
+            return null;
+        }
+
+        if (doDigestContent && !request.tryContentDigest()) {
+            return null;
+        }
+
+        Caller caller = new Caller();
+        callerCount++;
+        caller.withSessionSource(request).follow(request);
+
+        return caller;
+    }
+
+    private synchronized void leave() {
+        callerCount--;
+
+        if (callerCount == 0) {
+            request.cancel(false);
+        }
+    }
+
+}
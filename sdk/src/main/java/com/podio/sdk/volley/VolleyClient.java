@@ -30,10 +30,13 @@ import android.content.Context;
 import android.net.Uri;
 
 import com.android.volley.Cache;
+import com.android.volley.Network;
 import com.android.volley.RequestQueue;
 import com.android.volley.RequestQueue.RequestFilter;
+import com.android.volley.toolbox.BasicNetwork;
+import com.android.volley.toolbox.HttpStack;
 import com.android.volley.toolbox.HurlStack;
-import com.android.volley.toolbox.Volley;
+import com.android.volley.toolbox.NoCache;
 import com.podio.sdk.Client;
 import com.podio.sdk.Filter;
 import com.podio.sdk.JsonParser;
@@ -89,6 +92,26 @@ public class VolleyClient implements Client {
     private static RequestQueue volleyRequestQueue;
     private static RequestQueue volleyPriorityQueue;
 
+    /**
+     * The GET requests currently in flight, by method, URL and result type.
+     */
+    private final HashMap<String, SharedRequest<?>> inFlightRequests = new HashMap<String, SharedRequest<?>>();
+
+    /**
+     * The number of requests that were served by an already in-flight request.
+     */
+    private long coalescedRequestCount = 0L;
+
+    /**
+     * The parsed responses available for conditional GET requests.
+     */
+    private final HttpCache httpCache = new HttpCache(100);
+
+    /**
+     * Whether the fields of parsed responses are parsed lazily.
+     */
+    private volatile boolean lazyFields = false;
+
     @Override
     public Request<Void> authenticateWithUserCredentials(String username, String password) {
         Uri uri = new AuthPath()
@@ -178,12 +201,122 @@ public class VolleyClient implements Client {
         return authRequest;
     }
 
+    /**
+     * Returns the number of requests that didn't cause a network call of their
+     * own, but were attached to an identical request already in flight.
+     * 
+     * @return The number of coalesced requests since this client was created.
+     */
+    public long getCoalescedRequestCount() {
+        synchronized (inFlightRequests) {
+            return coalescedRequestCount;
+        }
+    }
+
+    /**
+     * Enables or disables lazy parsing of the fields in the responses of this
+     * client. Lazy fields of items (and applications) are kept as compact
+     * JSON, which takes less memory than the parsed fields, and only mapped
+     * onto domain objects once they are accessed, see
+     * {@link JsonParser#fromJson(java.io.Reader, Class, boolean)}.
+     * 
+     * @param enabled
+     *        Boolean true to parse fields lazily, false to parse them eagerly
+     *        (default).
+     */
+    public void setLazyFieldsEnabled(boolean enabled) {
+        lazyFields = enabled;
+    }
+
+    /**
+     * Evicts all responses cached for conditional requests.
+     */
+    public void clearHttpCache() {
+        httpCache.clear();
+    }
+
     @Override
     public <T> Request<T> request(Request.Method method, Filter filter, Object item, Class<T> classOfItem) {
+        return request(method, filter, item, classOfItem, false);
+    }
+
+    /**
+     * Performs a request as described by {@link Client#request(Request.Method,
+     * Filter, Object, Class)}, optionally as a conditional request. Parsed GET
+     * responses that carry validators ("ETag" or "Last-Modified") are kept in
+     * memory, per session. Subsequent requests for the same resource ask the
+     * API whether the content has changed, and if it hasn't, the previously
+     * parsed result is delivered without downloading or parsing it again.
+     * <p>
+     * A GET request for a resource which is already being fetched doesn't
+     * cause a network call of its own. Each caller still gets a request of
+     * its own, which can be cancelled without affecting the others, but the
+     * parsed result is one and the same object for all of them. Callers
+     * changing it must make a copy first.
+     * 
+     * @param doUseHttpCache
+     *        Whether to use conditional requests. This only applies to GET
+     *        requests.
+     */
+    public <T> Request<T> request(Request.Method method, Filter filter, Object item, Class<T> classOfItem, boolean doUseHttpCache) {
+        return request(method, filter, item, classOfItem, doUseHttpCache, false);
+    }
+
+    /**
+     * Performs a request as described by {@link VolleyClient#request(Request.Method,
+     * Filter, Object, Class, boolean)}, optionally calculating a digest of the
+     * response body on the worker thread. The digest is then available
+     * through {@link VolleyClient#getContentDigest(Request)} once the result
+     * has been delivered.
+     * 
+     * @param doDigestContent
+     *        Whether to calculate the digest of the response body.
+     */
+    <T> Request<T> request(Request.Method method, Filter filter, Object item, Class<T> classOfItem,
+            boolean doUseHttpCache, boolean doDigestContent) {
+
         // Prepare the request.
         String url = filter.buildUri(scheme, authority).toString();
         String body = item != null ? JsonParser.toJson(item) : null;
-        VolleyRequest<T> request = VolleyRequest.newRequest(method, url, body, classOfItem);
+
+        // Identical GET requests that are already on their way are shared
+        // rather than sent again.
+        boolean lazyFields = this.lazyFields;
+        String key = method == Request.Method.GET && body == null ?
+                method + " " + url + " " + (classOfItem != null ? classOfItem.getName() : "") + " " + lazyFields :
+                null;
+
+        if (key != null) {
+            synchronized (inFlightRequests) {
+                @SuppressWarnings("unchecked")
+                SharedRequest<T> inFlightRequest = (SharedRequest<T>) inFlightRequests.get(key);
+                Request<T> caller = inFlightRequest != null ? inFlightRequest.join(doDigestContent) : null;
+
+                if (caller != null) {
+                    coalescedRequestCount++;
+                    return caller;
+                }
+            }
+        }
+
+        VolleyRequest<T> request = VolleyRequest.newRequest(method, url, body, classOfItem)
+                .withLazyFields(lazyFields);
+
+        if (doDigestContent) {
+            request.withContentDigest();
+        }
+
+        if (doUseHttpCache && method == Request.Method.GET) {
+            String cacheKey = httpCache.getKey(Session.accessToken(), url, classOfItem);
+
+            if (cacheKey != null) {
+                request.withHttpCache(httpCache, cacheKey);
+            }
+        }
+
+        Request<T> caller = key != null ?
+                trackInFlightRequest(key, request) :
+                request;
 
         // Make us aware of any authentication errors.
         request.withAuthErrorListener(new AuthErrorListener<T>() {
@@ -249,36 +382,46 @@ public class VolleyClient implements Client {
 
         volleyRequestQueue.add(request);
 
-        return request;
+        return caller;
     }
 
     public void setup(Context context, String scheme, String authority, String clientId, String clientSecret, SSLSocketFactory sslSocketFactory) {
+        setup(context, scheme, authority, clientId, clientSecret, sslSocketFactory, null);
+    }
+
+    /**
+     * Configures the client and, unless already done, creates the request
+     * queues. Both the default and the prioritized request queue send their
+     * requests through the same HTTP stack, enabling them to share any
+     * connection pool it may offer.
+     * 
+     * @param httpStack
+     *        Optional HTTP stack (e.g. an {@link OkHttpStack}) to perform the
+     *        requests through. If null, a {@link HurlStack} with the given SSL
+     *        socket factory is used. The stack is only used when the request
+     *        queues are created, i.e. the first time this method is called.
+     */
+    public void setup(Context context, String scheme, String authority, String clientId, String clientSecret, SSLSocketFactory sslSocketFactory, HttpStack httpStack) {
         this.scheme = scheme;
         this.authority = authority;
         this.clientId = clientId;
         this.clientSecret = clientSecret;
 
         // Ensure the expected request queues exists.
-        if (sslSocketFactory == null) {
-            if (volleyRequestQueue == null) {
-                volleyRequestQueue = Volley.newRequestQueue(context);
-                volleyRequestQueue.start();
+        if (volleyRequestQueue == null || volleyPriorityQueue == null) {
+            if (httpStack == null) {
+                httpStack = new HurlStack(null, sslSocketFactory);
             }
 
-            if (volleyPriorityQueue == null) {
-                volleyPriorityQueue = Volley.newRequestQueue(context);
-                volleyPriorityQueue.start();
-            }
-        } else if (volleyRequestQueue == null || volleyPriorityQueue == null) {
-            HurlStack stack = new HurlStack(null, sslSocketFactory);
+            Network network = new BasicNetwork(httpStack);
 
             if (volleyRequestQueue == null) {
-                volleyRequestQueue = Volley.newRequestQueue(context, stack);
+                volleyRequestQueue = new RequestQueue(new NoCache(), network);
                 volleyRequestQueue.start();
             }
 
             if (volleyPriorityQueue == null) {
-                volleyPriorityQueue = Volley.newRequestQueue(context, stack);
+                volleyPriorityQueue = new RequestQueue(new NoCache(), network);
                 volleyPriorityQueue.start();
             }
         }
@@ -359,6 +502,72 @@ public class VolleyClient implements Client {
         return url;
     }
 
+    /**
+     * Makes the given request available to subsequent callers asking for the
+     * same resource, until it's delivered.
+     * 
+     * @return The request future of the first caller.
+     */
+    private <T> Request<T> trackInFlightRequest(final String key, VolleyRequest<T> request) {
+        final SharedRequest<T> sharedRequest = new SharedRequest<T>(request);
+        Request<T> caller;
+
+        synchronized (inFlightRequests) {
+            caller = sharedRequest.join(false);
+            inFlightRequests.put(key, sharedRequest);
+        }
+
+        // None of the listeners on the shared request consume the events,
+        // hence these will always be called.
+        request.withResultListener(new ResultListener<T>() {
+
+            @Override
+            public boolean onRequestPerformed(T content) {
+                untrackInFlightRequest(key, sharedRequest);
+                return false;
+            }
+
+        });
+
+        request.withErrorListener(new ErrorListener() {
+
+            @Override
+            public boolean onErrorOccured(Throwable cause) {
+                untrackInFlightRequest(key, sharedRequest);
+                return false;
+            }
+
+        });
+
+        return caller;
+    }
+
+    /**
+     * Returns the digest of the response body of a request created by
+     * {@link VolleyClient#request(Request.Method, Filter, Object, Class,
+     * boolean, boolean)}.
+     * 
+     * @return The digest, or null if it wasn't asked for, or isn't known
+     *         (yet).
+     */
+    static String getContentDigest(Request<?> request) {
+        if (request instanceof SharedRequest.Caller) {
+            return ((SharedRequest<?>.Caller) request).getContentDigest();
+        } else if (request instanceof VolleyRequest) {
+            return ((VolleyRequest<?>) request).getContentDigest();
+        } else {
+            return null;
+        }
+    }
+
+    private void untrackInFlightRequest(String key, SharedRequest<?> sharedRequest) {
+        synchronized (inFlightRequests) {
+            if (inFlightRequests.get(key) == sharedRequest) {
+                inFlightRequests.remove(key);
+            }
+        }
+    }
+
     private Uri buildAuthUri() {
         Uri result = null;
         String refreshToken = Session.refreshToken();
@@ -22,12 +22,196 @@
 
 package com.podio.sdk.volley;
 
+import java.nio.charset.Charset;
+import java.util.HashMap;
+
 import com.podio.sdk.Filter;
 import com.podio.sdk.Provider;
 import com.podio.sdk.Request;
+import com.podio.sdk.Session;
+import com.podio.sdk.Store;
+import com.podio.sdk.internal.Utils;
 
 public class VolleyProvider extends Provider {
 
+    /**
+     * Describes how long content in the read-through cache of a provider may
+     * be served, see {@link VolleyProvider#setCache(Store, CachePolicy)}.
+     */
+    public static final class CachePolicy {
+        long maxAgeMillis = 0L;
+        long staleIfErrorMillis = 0L;
+
+        /**
+         * Sets the age up to which cached content is considered fresh. Fresh
+         * content is served from the cache only, without asking the API. Older
+         * content is still served, but also revalidated with the API.
+         * 
+         * @param maxAgeMillis
+         *        The max age of fresh content in milliseconds. Defaults to
+         *        zero, which revalidates all content.
+         * @return This policy object, to enable convenient chaining.
+         */
+        public CachePolicy withMaxAge(long maxAgeMillis) {
+            this.maxAgeMillis = Math.max(0L, maxAgeMillis);
+            return this;
+        }
+
+        /**
+         * Sets for how long, past its max age, stale content may stand in for
+         * fresh content if the revalidation fails. Within this time the error
+         * is swallowed, beyond it the error is delivered after the stale
+         * content.
+         * 
+         * @param staleIfErrorMillis
+         *        The stale-if-error time in milliseconds. Defaults to zero,
+         *        which delivers all errors.
+         * @return This policy object, to enable convenient chaining.
+         */
+        public CachePolicy withStaleIfError(long staleIfErrorMillis) {
+            this.staleIfErrorMillis = Math.max(0L, staleIfErrorMillis);
+            return this;
+        }
+    }
+
+    /**
+     * Collects a cached result and its stamp, which are read from the store in
+     * parallel, and serves the result once both have arrived. The store may
+     * deliver the two on different threads.
+     */
+    private final class CacheRead<T> {
+        private final Filter filter;
+        private final Class<T> classOfResult;
+        private final Store store;
+        private final CachePolicy policy;
+        private final String key;
+        private final ReadThroughRequest<T> request;
+
+        private int pendingCount;
+        private CacheStamp stamp;
+        private T cached;
+
+        private CacheRead(Filter filter, Class<T> classOfResult, Store store, CachePolicy policy,
+                String key, ReadThroughRequest<T> request) {
+
+            this.filter = filter;
+            this.classOfResult = classOfResult;
+            this.store = store;
+            this.policy = policy;
+            this.key = key;
+            this.request = request;
+            this.pendingCount = 2;
+        }
+
+        private void onStampRead(CacheStamp stamp) {
+            synchronized (this) {
+                this.stamp = stamp;
+                pendingCount--;
+
+                if (pendingCount > 0) {
+                    return;
+                }
+            }
+
+            serve();
+        }
+
+        private void onResultRead(T cached) {
+            synchronized (this) {
+                this.cached = cached;
+                pendingCount--;
+
+                if (pendingCount > 0) {
+                    return;
+                }
+            }
+
+            serve();
+        }
+
+        private void serve() {
+            // Content without a known fetch time is considered infinitely old.
+            long age = stamp != null ?
+                    Math.max(0L, System.currentTimeMillis() - stamp.getFetchedAt()) :
+                    Long.MAX_VALUE;
+
+            if (cached != null) {
+                request.deliverCached(cached, stamp != null ? stamp.getDigest() : null);
+            }
+
+            if (cached == null || age >= policy.maxAgeMillis) {
+                revalidate(filter, classOfResult, store, policy, key, age, request);
+            }
+        }
+    }
+
+    /**
+     * The suffix of the store key under which the stamp of a cached value is
+     * kept.
+     */
+    private static final String STAMP_SUFFIX = "#stamp";
+
+    /**
+     * Identifies the account of the current session, so that cached content
+     * is never served to another account. Falls back to a digest of the
+     * refresh token, as store keys may end up in file names, if the API
+     * hasn't said which account the session belongs to.
+     */
+    private static String getSessionScope() {
+        String ref = Session.ref();
+
+        if (Utils.notEmpty(ref)) {
+            return ref;
+        }
+
+        String refreshToken = Session.refreshToken();
+        String digest = Utils.notEmpty(refreshToken) ?
+                Utils.sha1(refreshToken.getBytes(Charset.forName("UTF-8"))) :
+                null;
+
+        return digest != null ? digest : "";
+    }
+
+    private boolean isHttpCacheEnabled = false;
+    private Store cacheStore = null;
+    private CachePolicy cachePolicy = null;
+
+    /**
+     * Enables or disables the read-through cache for this provider. When
+     * enabled, GET requests deliver any cached result right away, while a
+     * fresh result is fetched in the background, as described by the given
+     * policy. The fresh result is written back to the store and delivered to
+     * the result listeners a second time, but only if it differs from the
+     * cached one.
+     * <p>
+     * The cached content is keyed by account and URL, so the store may be
+     * shared between accounts.
+     * 
+     * @param store
+     *        The store to cache results in, or null to disable the cache.
+     * @param policy
+     *        The cache policy for this provider. If null, all cached content
+     *        is revalidated and all errors are delivered.
+     */
+    public void setCache(Store store, CachePolicy policy) {
+        this.cacheStore = store;
+        this.cachePolicy = policy != null ? policy : new CachePolicy();
+    }
+
+    /**
+     * Enables or disables conditional GET requests for this provider. When
+     * enabled, unchanged content is served from memory, as confirmed by the
+     * API, rather than downloaded and parsed again.
+     * 
+     * @param enabled
+     *        Boolean true to enable conditional requests, false otherwise
+     *        (default).
+     * @see VolleyClient#request(Request.Method, Filter, Object, Class, boolean)
+     */
+    public void setHttpCacheEnabled(boolean enabled) {
+        this.isHttpCacheEnabled = enabled;
+    }
+
     protected <T> Request<T> delete(Filter filter) {
         validateClient();
         return client.request(Request.Method.DELETE, filter, null, null);
@@ -35,9 +219,142 @@ public class VolleyProvider extends Provider {
 
     protected <T> Request<T> get(Filter filter, Class<T> classOfResult) {
         validateClient();
+
+        // Results of no particular type can't be told apart in the store,
+        // hence they're never cached.
+        if (cacheStore != null && classOfResult != null) {
+            return getThroughCache(filter, classOfResult, cacheStore, cachePolicy);
+        }
+
+        return getFromApi(filter, classOfResult, false);
+    }
+
+    /**
+     * Fetches a result from the API, optionally with a digest of the response
+     * body, see {@link VolleyClient#getContentDigest(Request)}.
+     */
+    private <T> Request<T> getFromApi(Filter filter, Class<T> classOfResult, boolean doDigestContent) {
+        if (client instanceof VolleyClient && (isHttpCacheEnabled || doDigestContent)) {
+            return ((VolleyClient) client).request(Request.Method.GET, filter, null, classOfResult,
+                    isHttpCacheEnabled, doDigestContent);
+        }
+
         return client.request(Request.Method.GET, filter, null, classOfResult);
     }
 
+    /**
+     * Reads the cached result and its stamp from the given store, delivers
+     * the result if found and revalidates it with the API unless it's still
+     * fresh.
+     */
+    private <T> Request<T> getThroughCache(final Filter filter, final Class<T> classOfResult,
+            final Store store, final CachePolicy policy) {
+
+        // The same URL may well give different content for another account.
+        final String key = getSessionScope() + " " + filter.buildUri(null, null).toString() + "#" + classOfResult.getName();
+        final ReadThroughRequest<T> request = new ReadThroughRequest<T>();
+        final CacheRead<T> cacheRead = new CacheRead<T>(filter, classOfResult, store, policy, key, request);
+
+        // The stamp and the result are of different types, hence they can't
+        // be read by a single getAll. They're read in parallel instead.
+        store.get(key + STAMP_SUFFIX, CacheStamp.class)
+                .withResultListener(new Request.ResultListener<CacheStamp>() {
+
+                    @Override
+                    public boolean onRequestPerformed(CacheStamp stamp) {
+                        cacheRead.onStampRead(stamp);
+                        return false;
+                    }
+
+                })
+                .withErrorListener(new Request.ErrorListener() {
+
+                    @Override
+                    public boolean onErrorOccured(Throwable cause) {
+                        // Content without a known fetch time is considered
+                        // infinitely old.
+                        cacheRead.onStampRead(null);
+                        return true;
+                    }
+
+                });
+
+        store.get(key, classOfResult)
+                .withResultListener(new Request.ResultListener<T>() {
+
+                    @Override
+                    public boolean onRequestPerformed(T cached) {
+                        cacheRead.onResultRead(cached);
+                        return false;
+                    }
+
+                })
+                .withErrorListener(new Request.ErrorListener() {
+
+                    @Override
+                    public boolean onErrorOccured(Throwable cause) {
+                        // An unreadable cache is no reason to fail, just go
+                        // fetch the content.
+                        cacheRead.onResultRead(null);
+                        return true;
+                    }
+
+                });
+
+        return request;
+    }
+
+    /**
+     * Fetches the fresh result from the API, writes it back to the store and
+     * delivers it if it differs from the cached result.
+     */
+    private <T> void revalidate(Filter filter, Class<T> classOfResult, final Store store,
+            final CachePolicy policy, final String key, final long age, final ReadThroughRequest<T> request) {
+
+        if (request.isCancelled()) {
+            return;
+        }
+
+        final Request<T> networkRequest = getFromApi(filter, classOfResult, true);
+        request.setNetworkRequest(networkRequest);
+
+        networkRequest
+                .withResultListener(new Request.ResultListener<T>() {
+
+                    @Override
+                    public boolean onRequestPerformed(T fresh) {
+                        String digest = VolleyClient.getContentDigest(networkRequest);
+
+                        if (fresh != null) {
+                            HashMap<String, Object> values = new HashMap<String, Object>();
+                            values.put(key, fresh);
+                            values.put(key + STAMP_SUFFIX, new CacheStamp(System.currentTimeMillis(), digest));
+                            store.setAll(values);
+                        }
+
+                        request.deliverFresh(fresh, digest);
+                        return false;
+                    }
+
+                })
+                .withErrorListener(new Request.ErrorListener() {
+
+                    @Override
+                    public boolean onErrorOccured(Throwable cause) {
+                        // The read-through request delivers the error to the
+                        // global listeners as well, hence always consume it.
+                        boolean isStaleAllowed = age - policy.maxAgeMillis < policy.staleIfErrorMillis;
+
+                        if (!request.hasResult() || !isStaleAllowed) {
+                            request.deliverError(cause);
+                        }
+
+                        return true;
+                    }
+
+                });
+    }
+
     protected <T> Request<T> post(Filter filter, Object item, Class<T> classOfItem) {
         validateClient();
         return client.request(Request.Method.POST, filter, item, classOfItem);
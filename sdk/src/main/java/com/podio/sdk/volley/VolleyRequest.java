@@ -35,6 +35,9 @@ import com.podio.sdk.PodioError;
 import com.podio.sdk.Session;
 import com.podio.sdk.internal.Utils;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.util.Calendar;
 import java.util.HashMap;
@@ -118,6 +121,22 @@ public class VolleyRequest<T> extends Request<T> implements com.podio.sdk.Reques
     private Throwable error;
     private boolean isAuthRequest;
     private boolean hasSessionChanged;
+    private volatile boolean isDelivered;
+
+    private HttpCache httpCache;
+    private HttpCache.Entry cacheEntry;
+    private String cacheKey;
+
+    private boolean lazyFields;
+    private volatile String contentDigest;
+
+    /**
+     * Guards the decision whether to calculate the digest of the response
+     * body, which is made once the parsing starts.
+     */
+    private final Object digestLock = new Object();
+    private boolean doDigestContent;
+    private boolean isParseStarted;
 
     protected VolleyRequest(int method, String url, Class<T> resultType, RequestFuture<T> volleyRequestFuture, boolean isAuthRequest) {
         super(method, url, volleyRequestFuture);
@@ -165,19 +184,19 @@ public class VolleyRequest<T> extends Request<T> implements com.podio.sdk.Reques
 
     @Override
     public VolleyRequest<T> withResultListener(ResultListener<T> resultListener) {
-        callbackManager.addResultListener(resultListener, isDone(), result);
+        callbackManager.addResultListener(resultListener, isDone() || isDelivered && error == null, result);
         return this;
     }
 
     @Override
     public VolleyRequest<T> withErrorListener(ErrorListener errorListener) {
-        callbackManager.addErrorListener(errorListener, isDone() && error != null, error);
+        callbackManager.addErrorListener(errorListener, (isDone() || isDelivered) && error != null, error);
         return this;
     }
 
     @Override
     public VolleyRequest<T> withSessionListener(SessionListener sessionListener) {
-        callbackManager.addSessionListener(sessionListener, isDone() && hasSessionChanged);
+        callbackManager.addSessionListener(sessionListener, (isDone() || isDelivered) && hasSessionChanged);
         return this;
     }
 
@@ -201,6 +220,18 @@ public class VolleyRequest<T> extends Request<T> implements com.podio.sdk.Reques
             headers.remove("Authorization");
         }
 
+        // Ask the API to only send the content if it has changed since we
+        // last saw it.
+        if (cacheEntry != null) {
+            if (Utils.notEmpty(cacheEntry.etag)) {
+                headers.put("If-None-Match", cacheEntry.etag);
+            }
+
+            if (Utils.notEmpty(cacheEntry.lastModified)) {
+                headers.put("If-Modified-Since", cacheEntry.lastModified);
+            }
+        }
+
         return headers;
     }
 
@@ -219,6 +250,8 @@ public class VolleyRequest<T> extends Request<T> implements com.podio.sdk.Reques
         // This method is executed on the main thread. Extra care should be
         // taken on what is done here.
 
+        isDelivered = true;
+
         if (isExpiredError(this.error)) {
             callbackManager.deliverAuthError(this);
         }
@@ -232,6 +265,7 @@ public class VolleyRequest<T> extends Request<T> implements com.podio.sdk.Reques
         // taken on what is done here.
 
         this.result = result;
+        this.isDelivered = true;
 
         if (hasSessionChanged) {
             callbackManager.deliverSession();
@@ -264,20 +298,47 @@ public class VolleyRequest<T> extends Request<T> implements com.podio.sdk.Reques
     protected Response<T> parseNetworkResponse(NetworkResponse response) {
         // This method is executed on the worker thread. It's "safe" to perform
         // JSON parsing here.
+        boolean doDigestContent;
+
+        synchronized (digestLock) {
+            isParseStarted = true;
+            doDigestContent = this.doDigestContent;
+        }
 
         try {
             Entry cacheHeaders = HttpHeaderParser.parseCacheHeaders(response);
             String charSet = HttpHeaderParser.parseCharset(response.headers);
-            String json = new String(response.data, charSet);
 
             if (isAuthRequest) {
+                String json = new String(response.data, charSet);
                 Session.set(json);
                 hasSessionChanged = true;
                 return Response.success(null, cacheHeaders);
             } else if (classOfResult == null || classOfResult == Void.class) {
                 return Response.success(null, cacheHeaders);
+            } else if (cacheEntry != null && response.statusCode == 304) {
+                // Not modified. Serve the previously parsed content.
+                @SuppressWarnings("unchecked")
+                T result = (T) cacheEntry.result;
+                contentDigest = cacheEntry.digest;
+                return Response.success(result, cacheHeaders);
             } else {
-                T result = JsonParser.fromJson(json, classOfResult);
+                // A conditional request may be answered from the cache later
+                // on, and then needs the digest of the original body.
+                String digest = doDigestContent || httpCache != null ?
+                        Utils.sha1(response.data) :
+                        null;
+
+                // Decode the response bytes on the fly rather than building a
+                // (UTF-16) string copy of the entire response body.
+                Reader reader = new InputStreamReader(new ByteArrayInputStream(response.data), charSet);
+                T result = JsonParser.fromJson(reader, classOfResult, lazyFields);
+                contentDigest = digest;
+
+                if (httpCache != null) {
+                    httpCache.put(cacheKey, response.headers, result, digest);
+                }
+
                 return Response.success(result, cacheHeaders);
             }
         } catch (UnsupportedEncodingException e) {
@@ -298,6 +359,73 @@ public class VolleyRequest<T> extends Request<T> implements com.podio.sdk.Reques
         return callbackManager.removeSessionListener(sessionListener);
     }
 
+    /**
+     * Enables conditional requests for this request, based on the given
+     * cache.
+     */
+    VolleyRequest<T> withHttpCache(HttpCache httpCache, String cacheKey) {
+        this.httpCache = httpCache;
+        this.cacheKey = cacheKey;
+        this.cacheEntry = httpCache.get(cacheKey);
+        return this;
+    }
+
+    /**
+     * Makes this request calculate a digest of the response body, on the
+     * worker thread, as the response is parsed. This has no effect once the
+     * response has been parsed.
+     */
+    VolleyRequest<T> withContentDigest() {
+        tryContentDigest();
+        return this;
+    }
+
+    /**
+     * Makes this request calculate a digest of the response body, as
+     * described by {@link VolleyRequest#withContentDigest()}, unless the
+     * response is being parsed already.
+     * 
+     * @return Boolean true if the digest will be calculated, false if it's too
+     *         late for that.
+     */
+    boolean tryContentDigest() {
+        synchronized (digestLock) {
+            if (!isParseStarted) {
+                doDigestContent = true;
+            }
+
+            return doDigestContent;
+        }
+    }
+
+    /**
+     * Returns the digest of the response body, if asked for through
+     * {@link VolleyRequest#withContentDigest()}. Equal digests mean equal
+     * response bodies.
+     * 
+     * @return The digest, or null if not calculated (yet).
+     */
+    String getContentDigest() {
+        return contentDigest;
+    }
+
+    /**
+     * Sets whether the fields of the parsed result are parsed lazily, see
+     * {@link JsonParser#fromJson(java.io.Reader, Class, boolean)}.
+     */
+    VolleyRequest<T> withLazyFields(boolean lazyFields) {
+        this.lazyFields = lazyFields;
+        return this;
+    }
+
+    /**
+     * Tells whether a result or an error has been delivered to the callbacks
+     * of this request.
+     */
+    boolean isDelivered() {
+        return isDelivered;
+    }
+
     AuthErrorListener<T> removeAuthErrorListener(AuthErrorListener<T> authErrorListener) {
         return callbackManager.removeAuthErrorListener(authErrorListener);
     }